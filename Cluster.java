@@ -6,12 +6,15 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.lucene.search.ScoreDoc;
 
 import edu.co.usbcali.ir.constants.PathsConstants;
+import edu.co.usbcali.ir.util.Metrics;
 
 /**
  * Makes all the clustering process for the recovered documents based on method using Covering Array
@@ -21,6 +24,41 @@ import edu.co.usbcali.ir.constants.PathsConstants;
  */
 public class Cluster
 {
+    /**
+     * Number of clusters used for the Covering Array lines
+     */
+    private static final int CLUSTER_COUNT = 5;
+    
+    /**
+     * Covering Array lines, read once from the resources and shared by all the clusterings
+     */
+    private static volatile List<Integer[]> coveringArray;
+    
+    /**
+     * Summary of the last local search refinement, or null if the clustering was not refined
+     */
+    private RefinementResult refinementResult;
+    
+    /**
+     * Number of Covering Array lines evaluated in the last clustering
+     */
+    private int evaluatedRows;
+    
+    /**
+     * Time from {@link System#nanoTime()} when the clustering stops evaluating Covering Array lines
+     */
+    private long deadline;
+    
+    /**
+     * Indicates if the clustering has a deadline
+     */
+    private boolean hasDeadline;
+    
+    /**
+     * Indicates if the last clustering was stopped by the deadline before evaluating all the lines
+     */
+    private boolean partial;
+    
     /**
      * Gets the best clustering for the documents recovered from the indexed files
      * @param scoreDocs Recovered documents
@@ -29,7 +67,6 @@ public class Cluster
      * @throws Exception Throws an exception if the Covering Array file is not read successfully or if the 
      * max of results is bigger than 20 (max columns of Covering Array)
      */
-    @SuppressWarnings("unused")
     public List<List<Integer>> getDocumentsClustering(ScoreDoc[] scoreDocs, int results) throws Exception
     {
         if (results > 20)
@@ -37,27 +74,160 @@ public class Cluster
             throw new Exception("The max number of documents to clustering is 20");
         }
         
+        long startTime = System.nanoTime();
         List<Integer[]> coveringArray = getCoveringArray();
         
+        float[] scores = getScores(scoreDocs, results);
+        
         float bestSSE = Float.MAX_VALUE;
-        List<List<Integer>> bestClusters = null;
         Integer[] bestCoverArray = null;
         
+        evaluatedRows = 0;
+        partial = false;
         for (Integer[] coverArray : coveringArray)
         {
-            List<List<Integer>> clusters = getCluster(coverArray, results);
-            List<Float> clustersSSE = getClusterSSE(clusters, scoreDocs);
-            float lineSSE = getLineSSE(clustersSSE);
+            evaluatedRows++;
+            ClusterStatistics statistics = getClusterStatistics(coverArray, scores);
+            float lineSSE = getLineSSE(coverArray, statistics, scores);
             
             if (lineSSE < bestSSE)
             {
                 bestSSE = lineSSE;
-                bestClusters = clusters.stream().collect(Collectors.toList());
-                bestCoverArray = Arrays.copyOf(coverArray, coverArray.length, Integer[].class);
+                bestCoverArray = coverArray;
             }
+            
+            if (hasDeadline && System.nanoTime() - deadline > 0 && evaluatedRows < coveringArray.size())
+            {
+                partial = true;
+                break;
+            }
+        }
+        
+        Metrics.recordPhase(Metrics.CLUSTER, startTime);
+        
+        if (bestCoverArray == null)
+        {
+            return null;
+        }
+        
+        return getCluster(bestCoverArray, results);
+    }
+    
+    /**
+     * Sets the time when the clustering stops evaluating Covering Array lines and returns the best line
+     * evaluated until then. The refinement is skipped when the deadline is passed
+     * @param deadline Deadline from {@link System#nanoTime()}
+     */
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+        hasDeadline = true;
+    }
+    
+    /**
+     * Indicates if the last clustering was stopped by the deadline
+     * @return True if not all the Covering Array lines were evaluated
+     */
+    public boolean isPartial()
+    {
+        return partial;
+    }
+    
+    /**
+     * Gets the number of Covering Array lines evaluated in the last clustering
+     * @return Number of evaluated lines
+     */
+    public int getEvaluatedRows()
+    {
+        return evaluatedRows;
+    }
+    
+    /**
+     * Gets the best clustering from the Covering Array and refines it with local search over single document
+     * moves. Each number of clusters in the range is refined in parallel starting from the best Covering
+     * Array line, and the refined clustering with the best Silhouette Coefficient is returned
+     * @param scoreDocs Recovered documents
+     * @param results Max number of documents recovered
+     * @param refinement Local search used to refine the clustering
+     * @param minClusters Min number of clusters to evaluate
+     * @param maxClusters Max number of clusters to evaluate
+     * @return List with documents clustering
+     * @throws Exception Throws an exception if the Covering Array file is not read successfully, if the 
+     * max of results is bigger than 20 (max columns of Covering Array) or if the clusters range is not valid
+     */
+    public List<List<Integer>> getDocumentsClustering(ScoreDoc[] scoreDocs, int results,
+        ClusterRefinement refinement, int minClusters, int maxClusters) throws Exception
+    {
+        if (minClusters < 2 || minClusters > maxClusters)
+        {
+            throw new Exception("The clusters range must start at 2 or more and end after its start");
+        }
+        
+        List<List<Integer>> lineClusters = getDocumentsClustering(scoreDocs, results);
+        float[] scores = getScores(scoreDocs, results);
+        
+        int maxCount = Math.min(maxClusters, scores.length);
+        if (lineClusters == null || minClusters > maxCount || partial)
+        {
+            return lineClusters;
+        }
+        
+        int[] lineLabels = new int[scores.length];
+        for (int i = 0; i < lineClusters.size(); i++)
+        {
+            for (Integer docIndex : lineClusters.get(i))
+            {
+                if (docIndex < scores.length)
+                {
+                    lineLabels[docIndex] = i;
+                }
+            }
+        }
+        
+        long startTime = System.nanoTime();
+        refinementResult = IntStream.rangeClosed(minClusters, maxCount).parallel()
+            .mapToObj(clusterCount -> refineClusters(refinement, scores, lineLabels, clusterCount))
+            .max(Comparator.comparingDouble(RefinementResult::getSilhouette))
+            .get();
+        Metrics.recordPhase(Metrics.REFINE, startTime);
+        
+        List<List<Integer>> clusters = new ArrayList<>();
+        for (int i = 0; i < refinementResult.getClusterCount(); i++)
+        {
+            clusters.add(new ArrayList<>());
+        }
+        
+        int[] labels = refinementResult.getLabels();
+        for (int i = 0; i < labels.length; i++)
+        {
+            clusters.get(labels[i]).add(i);
+        }
+        
+        return clusters;
+    }
+    
+    /**
+     * Refines the Covering Array line for a number of clusters. The line clusters are folded into the
+     * available clusters before the refinement
+     * @param refinement Local search used to refine the clustering
+     * @param scores Score for each document
+     * @param lineLabels Cluster for each document in the best Covering Array line
+     * @param clusterCount Number of clusters
+     * @return Summary of the refinement with the Silhouette Coefficient of the refined clustering
+     */
+    private RefinementResult refineClusters(ClusterRefinement refinement, float[] scores, int[] lineLabels,
+        int clusterCount)
+    {
+        int[] labels = Arrays.copyOf(lineLabels, lineLabels.length);
+        for (int i = 0; i < labels.length; i++)
+        {
+            labels[i] = labels[i] % clusterCount;
         }
         
-        return bestClusters;
+        RefinementResult result = refinement.refine(scores, labels, clusterCount);
+        result.setSilhouette(InternalEvaluation.getSilhouette(scores, labels, clusterCount));
+        
+        return result;
     }
     
     /**
@@ -70,7 +240,7 @@ public class Cluster
     {
         List<List<Integer>> clusters = new ArrayList<>();
         
-        for (int i = 0; i < 5; i++)
+        for (int i = 0; i < CLUSTER_COUNT; i++)
         {
             List<Integer> c = new ArrayList<>();
             clusters.add(c);
@@ -85,50 +255,57 @@ public class Cluster
     }
     
     /**
-     * Gets the Sum of Square Error (SSE) from each cluster
-     * @param clusters Documents clustering
-     * @param scoreDocs Recovered documents to get the score per document
-     * @return List with SSE result for each cluster
+     * Gets the score for each recovered document that can be clustered
+     * @param scoreDocs Recovered documents
+     * @param results Max number of documents recovered
+     * @return Score for each document
      */
-    private List<Float> getClusterSSE(List<List<Integer>> clusters, ScoreDoc[] scoreDocs)
+    private float[] getScores(ScoreDoc[] scoreDocs, int results)
     {
-        List<Float> clustersSSE = new ArrayList<>();
+        float[] scores = new float[Math.min(scoreDocs.length, results)];
         
-        InternalEvaluation internalEval = new InternalEvaluation(clusters, scoreDocs);
-        List<Float> centroids = internalEval.getCentroids();
+        for (int i = 0; i < scores.length; i++)
+        {
+            scores[i] = scoreDocs[i].score;
+        }
         
-        for (int i = 0; i < clusters.size(); i++)
+        return scores;
+    }
+    
+    /**
+     * Accumulates the count, sum and square sum of each cluster for one Covering Array line in a single
+     * pass, without building the clusters' lists
+     * @param items Covering Array line
+     * @param scores Score for each document
+     * @return Statistics for the clusters of the line
+     */
+    private ClusterStatistics getClusterStatistics(Integer[] items, float[] scores)
+    {
+        ClusterStatistics statistics = new ClusterStatistics(CLUSTER_COUNT);
+        
+        for (int i = 0; i < scores.length; i++)
         {
-            List<Integer> cluster = clusters.get(i);
-            
-            float centroid = centroids.get(i);
-            float sse = 0;
-            
-            for (Integer docIndex : cluster)
-            {
-                if (docIndex < scoreDocs.length)
-                {
-                    sse += Math.sqrt(Math.pow(centroid, 2) + Math.pow(scoreDocs[docIndex].score, 2));
-                }
-            }
-            
-            clustersSSE.add(sse);
+            statistics.add(items[i], scores[i]);
         }
         
-        return clustersSSE;
+        return statistics;
     }
     
     /**
-     * Sum the SSE result for each cluster
-     * @param clustersSSE SSE for each cluster
+     * Sum the Sum of Square Error (SSE) from each cluster for one Covering Array line
+     * @param items Covering Array line
+     * @param statistics Statistics for the clusters of the line
+     * @param scores Score for each document
      * @return Sum of the clusters' SSE
      */
-    private float getLineSSE(List<Float> clustersSSE)
+    private float getLineSSE(Integer[] items, ClusterStatistics statistics, float[] scores)
     {
         float lineSSE = 0;
-        for (Float sse : clustersSSE)
+        
+        for (int i = 0; i < scores.length; i++)
         {
-            lineSSE += sse;
+            float centroid = statistics.getCentroid(items[i]);
+            lineSSE += Math.sqrt(Math.pow(centroid, 2) + Math.pow(scores[i], 2));
         }
         
         return lineSSE;
@@ -157,33 +334,75 @@ public class Cluster
     }
     
     /**
-     * Reads and parse the Covering Array file converting it into array which for the clustering process
+     * Reads the Covering Array file if it was not read yet, so the first clustering does not wait for it
+     * @throws IOException Throws an exception if the Covering Array file is not read successfully
+     */
+    public static void preloadCoveringArray() throws IOException
+    {
+        getCoveringArray();
+    }
+    
+    /**
+     * Gets the Covering Array lines, reading and parsing the Covering Array file the first time. The lines
+     * are shared and must not be modified
      * @return Covering Array into a List
      * @throws IOException Throws an exception if the Covering Array file is not read successfully
      */
-    private List<Integer[]> getCoveringArray() throws IOException
+    private static List<Integer[]> getCoveringArray() throws IOException
     {
-        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(
-            PathsConstants.COVERING_ARRAY_FILE);
-        
-        BufferedReader buffer = new BufferedReader(new InputStreamReader(inputStream));
+        List<Integer[]> lines = coveringArray;
+        if (lines == null)
+        {
+            synchronized (Cluster.class)
+            {
+                lines = coveringArray;
+                if (lines == null)
+                {
+                    lines = Collections.unmodifiableList(readCoveringArray());
+                    coveringArray = lines;
+                }
+            }
+        }
         
-        List<Integer[]> coveringArray = new ArrayList<>();
+        return lines;
+    }
+    
+    /**
+     * Reads and parse the Covering Array file converting it into array which for the clustering process
+     * @return Covering Array into a List
+     * @throws IOException Throws an exception if the Covering Array file is not read successfully
+     */
+    private static List<Integer[]> readCoveringArray() throws IOException
+    {
+        InputStream inputStream = Cluster.class.getResourceAsStream(PathsConstants.COVERING_ARRAY_FILE);
         
-        String line;
-        while ((line = buffer.readLine()) != null)
+        List<Integer[]> lines = new ArrayList<>();
+        try (BufferedReader buffer = new BufferedReader(new InputStreamReader(inputStream)))
         {
-            String[] sItems = line.split(" ");
-            Integer[] items = new Integer[sItems.length];
-            
-            for (int i = 0; i < sItems.length; i++)
+            String line;
+            while ((line = buffer.readLine()) != null)
             {
-                items[i] = Integer.parseInt(sItems[i]);
+                String[] sItems = line.split(" ");
+                Integer[] items = new Integer[sItems.length];
+                
+                for (int i = 0; i < sItems.length; i++)
+                {
+                    items[i] = Integer.parseInt(sItems[i]);
+                }
+                
+                lines.add(items);
             }
-            
-            coveringArray.add(items);
         }
         
-        return coveringArray;
+        return lines;
+    }
+    
+    /**
+     * Gets the summary of the last local search refinement
+     * @return Refinement summary, or null if the clustering was not refined
+     */
+    public RefinementResult getRefinementResult()
+    {
+        return refinementResult;
     }
 }
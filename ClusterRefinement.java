@@ -0,0 +1,246 @@
+package edu.co.usbcali.ir.processes;
+
+import java.util.Arrays;
+
+/**
+ * Refines a documents clustering with local search over single document moves, reducing the Square Sum
+ * Within Clusters (SSW). Each move is evaluated in O(1) from the incremental clusters' statistics, and the
+ * search stops when its time budget is over. The SSW is not the criterion used by the {@link Cluster} to
+ * choose the Covering Array line that is refined, which sums sqrt(centroid^2 + score^2) over the documents
+ * of the line, so the refinement starts from the best line by that criterion and not by the SSW
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class ClusterRefinement
+{
+    /**
+     * Local search strategies for the refinement
+     */
+    public enum Strategy
+    {
+        /**
+         * Applies the best improving move for each document until no move improves the SSW
+         */
+        HILL_CLIMBING,
+        
+        /**
+         * Applies the best non-tabu move in each step, even if it does not improve the SSW, and keeps the
+         * best clustering found
+         */
+        TABU_SEARCH
+    }
+    
+    /**
+     * Number of steps that a moved document cannot be moved again in the tabu search
+     */
+    private static final int TABU_TENURE = 7;
+    
+    /**
+     * Number of steps without improving the best SSW before the tabu search stops
+     */
+    private static final int MAX_IDLE_STEPS = 100;
+    
+    /**
+     * Minimum SSW change considered as an improvement
+     */
+    private static final double EPSILON = 1e-9;
+    
+    /**
+     * Strategy used in the refinement
+     */
+    private Strategy strategy;
+    
+    /**
+     * Time budget for each refinement in nanoseconds
+     */
+    private long budgetNanos;
+    
+    /**
+     * Initializes the refinement
+     * @param strategy Local search strategy
+     * @param budgetMillis Time budget for each refinement in milliseconds
+     */
+    public ClusterRefinement(Strategy strategy, long budgetMillis)
+    {
+        this.strategy = strategy;
+        this.budgetNanos = budgetMillis * 1000000L;
+    }
+    
+    /**
+     * Refines a clustering moving one document at a time to reduce the SSW. The clusters that have one
+     * document are not emptied
+     * @param scores Score for each document
+     * @param labels Cluster for each document, updated with the refined clustering
+     * @param clusterCount Number of clusters
+     * @return Summary of the refinement
+     */
+    public RefinementResult refine(float[] scores, int[] labels, int clusterCount)
+    {
+        long startTime = System.nanoTime();
+        long deadline = startTime + budgetNanos;
+        
+        ClusterStatistics statistics = ClusterStatistics.fromLabels(labels, scores, clusterCount);
+        float initialSSW = statistics.getSSW();
+        
+        long[] counters = new long[2];
+        
+        if (strategy == Strategy.TABU_SEARCH)
+        {
+            tabuSearch(scores, labels, statistics, deadline, counters);
+        }
+        else
+        {
+            hillClimbing(scores, labels, statistics, deadline, counters);
+        }
+        
+        long elapsedNanos = System.nanoTime() - startTime;
+        float finalSSW = ClusterStatistics.fromLabels(labels, scores, clusterCount).getSSW();
+        
+        return new RefinementResult(strategy, clusterCount, labels, counters[0], counters[1], elapsedNanos, 
+            initialSSW, finalSSW);
+    }
+    
+    /**
+     * Moves each document to the cluster that most reduces the SSW, repeating until a whole pass over the
+     * documents has no improving move or the deadline is reached
+     * @param scores Score for each document
+     * @param labels Cluster for each document
+     * @param statistics Statistics for the clustering
+     * @param deadline Deadline from {@link System#nanoTime()}
+     * @param counters Evaluated and applied moves
+     */
+    private void hillClimbing(float[] scores, int[] labels, ClusterStatistics statistics, long deadline,
+        long[] counters)
+    {
+        boolean improved = true;
+        
+        while (improved)
+        {
+            improved = false;
+            
+            for (int i = 0; i < scores.length; i++)
+            {
+                if (System.nanoTime() > deadline)
+                {
+                    return;
+                }
+                
+                int from = labels[i];
+                if (from < 0 || statistics.getCount(from) == 1)
+                {
+                    continue;
+                }
+                
+                int bestCluster = from;
+                double bestDelta = -EPSILON;
+                
+                for (int c = 0; c < statistics.getClusterCount(); c++)
+                {
+                    if (c != from)
+                    {
+                        double delta = statistics.getMoveDelta(from, c, scores[i]);
+                        counters[0]++;
+                        
+                        if (delta < bestDelta)
+                        {
+                            bestDelta = delta;
+                            bestCluster = c;
+                        }
+                    }
+                }
+                
+                if (bestCluster != from)
+                {
+                    statistics.move(from, bestCluster, scores[i]);
+                    labels[i] = bestCluster;
+                    counters[1]++;
+                    improved = true;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Applies in each step the best move of a non-tabu document, even if it makes the SSW worse, so the
+     * search can leave local optima. A moved document is tabu for some steps unless moving it gives a
+     * better SSW than the best one found. The labels end with the best clustering found
+     * @param scores Score for each document
+     * @param labels Cluster for each document
+     * @param statistics Statistics for the clustering
+     * @param deadline Deadline from {@link System#nanoTime()}
+     * @param counters Evaluated and applied moves
+     */
+    private void tabuSearch(float[] scores, int[] labels, ClusterStatistics statistics, long deadline,
+        long[] counters)
+    {
+        int tenure = Math.max(1, Math.min(TABU_TENURE, scores.length / 2));
+        long[] tabuUntil = new long[scores.length];
+        
+        double currentSSW = statistics.getSSW();
+        double bestSSW = currentSSW;
+        int[] bestLabels = Arrays.copyOf(labels, labels.length);
+        
+        long step = 0;
+        int idleSteps = 0;
+        
+        while (idleSteps < MAX_IDLE_STEPS && System.nanoTime() <= deadline)
+        {
+            int moveDocument = -1;
+            int moveCluster = -1;
+            double moveDelta = Double.MAX_VALUE;
+            
+            for (int i = 0; i < scores.length; i++)
+            {
+                int from = labels[i];
+                if (from < 0 || statistics.getCount(from) == 1)
+                {
+                    continue;
+                }
+                
+                for (int c = 0; c < statistics.getClusterCount(); c++)
+                {
+                    if (c == from)
+                    {
+                        continue;
+                    }
+                    
+                    double delta = statistics.getMoveDelta(from, c, scores[i]);
+                    counters[0]++;
+                    
+                    boolean aspiration = currentSSW + delta < bestSSW - EPSILON;
+                    if ((tabuUntil[i] <= step || aspiration) && delta < moveDelta)
+                    {
+                        moveDocument = i;
+                        moveCluster = c;
+                        moveDelta = delta;
+                    }
+                }
+            }
+            
+            if (moveDocument < 0)
+            {
+                break;
+            }
+            
+            statistics.move(labels[moveDocument], moveCluster, scores[moveDocument]);
+            labels[moveDocument] = moveCluster;
+            tabuUntil[moveDocument] = step + tenure + 1;
+            currentSSW += moveDelta;
+            counters[1]++;
+            step++;
+            
+            if (currentSSW < bestSSW - EPSILON)
+            {
+                bestSSW = currentSSW;
+                System.arraycopy(labels, 0, bestLabels, 0, labels.length);
+                idleSteps = 0;
+            }
+            else
+            {
+                idleSteps++;
+            }
+        }
+        
+        System.arraycopy(bestLabels, 0, labels, 0, labels.length);
+    }
+}
@@ -0,0 +1,267 @@
+package edu.co.usbcali.ir.processes;
+
+import java.util.List;
+
+/**
+ * Keeps the statistics of a documents clustering in a single pass: count, score sum and score square sum
+ * for each cluster. The statistics are updated in O(1) when a document is added, removed or moved between
+ * clusters, and the centroids, SSB and SSW are derived from them without reading the documents again
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class ClusterStatistics
+{
+    /**
+     * Number of documents in each cluster
+     */
+    private int[] counts;
+    
+    /**
+     * Score sum for each cluster
+     */
+    private double[] sums;
+    
+    /**
+     * Score square sum for each cluster
+     */
+    private double[] squareSums;
+    
+    /**
+     * Number of documents in all the clusters
+     */
+    private int totalCount;
+    
+    /**
+     * Score sum for all the clusters
+     */
+    private double totalSum;
+    
+    /**
+     * Initializes the statistics for empty clusters
+     * @param clusterCount Number of clusters
+     */
+    public ClusterStatistics(int clusterCount)
+    {
+        counts = new int[clusterCount];
+        sums = new double[clusterCount];
+        squareSums = new double[clusterCount];
+    }
+    
+    /**
+     * Creates the statistics for a documents clustering. The documents without score are ignored
+     * @param clusters Documents clustering
+     * @param scores Score for each document
+     * @return Statistics for the clustering
+     */
+    public static ClusterStatistics fromClusters(List<List<Integer>> clusters, float[] scores)
+    {
+        ClusterStatistics statistics = new ClusterStatistics(clusters.size());
+        
+        for (int i = 0; i < clusters.size(); i++)
+        {
+            for (Integer docIndex : clusters.get(i))
+            {
+                if (docIndex < scores.length)
+                {
+                    statistics.add(i, scores[docIndex]);
+                }
+            }
+        }
+        
+        return statistics;
+    }
+    
+    /**
+     * Creates the statistics for a documents clustering given as a cluster label per document
+     * @param labels Cluster for each document, or -1 if the document does not belong to any cluster
+     * @param scores Score for each document
+     * @param clusterCount Number of clusters
+     * @return Statistics for the clustering
+     */
+    public static ClusterStatistics fromLabels(int[] labels, float[] scores, int clusterCount)
+    {
+        ClusterStatistics statistics = new ClusterStatistics(clusterCount);
+        
+        for (int i = 0; i < scores.length; i++)
+        {
+            if (labels[i] >= 0)
+            {
+                statistics.add(labels[i], scores[i]);
+            }
+        }
+        
+        return statistics;
+    }
+    
+    /**
+     * Adds a document to a cluster
+     * @param cluster Cluster index
+     * @param score Document score
+     */
+    public void add(int cluster, float score)
+    {
+        counts[cluster]++;
+        sums[cluster] += score;
+        squareSums[cluster] += (double) score * score;
+        
+        totalCount++;
+        totalSum += score;
+    }
+    
+    /**
+     * Removes a document from a cluster
+     * @param cluster Cluster index
+     * @param score Document score
+     */
+    public void remove(int cluster, float score)
+    {
+        counts[cluster]--;
+        sums[cluster] -= score;
+        squareSums[cluster] -= (double) score * score;
+        
+        totalCount--;
+        totalSum -= score;
+    }
+    
+    /**
+     * Moves a document from one cluster to another
+     * @param from Current cluster of the document
+     * @param to New cluster of the document
+     * @param score Document score
+     */
+    public void move(int from, int to, float score)
+    {
+        counts[from]--;
+        sums[from] -= score;
+        squareSums[from] -= (double) score * score;
+        
+        counts[to]++;
+        sums[to] += score;
+        squareSums[to] += (double) score * score;
+    }
+    
+    /**
+     * Gets the change in the SSW if a document is moved from one cluster to another, without moving it.
+     * The square sums cancel out, so only the counts and sums of both clusters are needed
+     * @param from Current cluster of the document
+     * @param to New cluster of the document
+     * @param score Document score
+     * @return SSW after the move minus SSW before the move
+     */
+    public double getMoveDelta(int from, int to, float score)
+    {
+        if (from == to)
+        {
+            return 0;
+        }
+        
+        double before = getSquaredSumOverCount(sums[from], counts[from])
+            + getSquaredSumOverCount(sums[to], counts[to]);
+        double after = getSquaredSumOverCount(sums[from] - score, counts[from] - 1)
+            + getSquaredSumOverCount(sums[to] + score, counts[to] + 1);
+        
+        return before - after;
+    }
+    
+    /**
+     * Gets the number of clusters
+     * @return Number of clusters
+     */
+    public int getClusterCount()
+    {
+        return counts.length;
+    }
+    
+    /**
+     * Gets the number of documents in a cluster
+     * @param cluster Cluster index
+     * @return Number of documents in the cluster
+     */
+    public int getCount(int cluster)
+    {
+        return counts[cluster];
+    }
+    
+    /**
+     * Gets the number of documents in all the clusters
+     * @return Number of documents
+     */
+    public int getDocumentCount()
+    {
+        return totalCount;
+    }
+    
+    /**
+     * Gets the centroid of a cluster
+     * @param cluster Cluster index
+     * @return Cluster centroid, or 0 if the cluster is empty
+     */
+    public float getCentroid(int cluster)
+    {
+        return counts[cluster] == 0 ? 0 : (float) (sums[cluster] / counts[cluster]);
+    }
+    
+    /**
+     * Gets the score average for all the documents
+     * @return Documents average, or 0 if there are no documents
+     */
+    public float getAverage()
+    {
+        return totalCount == 0 ? 0 : (float) (totalSum / totalCount);
+    }
+    
+    /**
+     * Gets the Square Sum Within Clusters (SSW) for one cluster
+     * @param cluster Cluster index
+     * @return SSW result for the cluster
+     */
+    public float getClusterSSW(int cluster)
+    {
+        double ssw = squareSums[cluster] - getSquaredSumOverCount(sums[cluster], counts[cluster]);
+        return (float) Math.max(ssw, 0);
+    }
+    
+    /**
+     * Gets the Square Sum Within Clusters (SSW) index
+     * @return SSW index result
+     */
+    public float getSSW()
+    {
+        float ssw = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            ssw += getClusterSSW(i);
+        }
+        
+        return ssw;
+    }
+    
+    /**
+     * Gets the Square Sum Between Clusters (SSB) index
+     * @return SSB index result
+     */
+    public float getSSB()
+    {
+        double average = getAverage();
+        double ssb = 0;
+        
+        for (int i = 0; i < counts.length; i++)
+        {
+            double diff = getCentroid(i) - average;
+            ssb += counts[i] * diff * diff;
+        }
+        
+        return (float) ssb;
+    }
+    
+    /**
+     * Gets the square of a sum divided by the number of summed values
+     * @param sum Values sum
+     * @param count Number of values
+     * @return Square of the sum over the count, or 0 if there are no values
+     */
+    private static double getSquaredSumOverCount(double sum, int count)
+    {
+        return count <= 0 ? 0 : sum * sum / count;
+    }
+}
@@ -11,7 +11,6 @@ import javax.servlet.ServletContext;
 import javax.ws.rs.core.Context;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.lucene.benchmark.utils.ExtractReuters;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
@@ -34,7 +33,8 @@ public class ExtractReutersNews
     private ServletContext context;
     
     /**
-     * Extracts the news into TXT files from Reuters SGM files
+     * Extracts the news into TXT files from Reuters SGM files, with a JSON file for each news with its date,
+     * title, topics and places
      * @param sgmDirPath Path from the Reuters SGM files 
      * @param dataDirPath Path to save the TXT files
      * @throws IOException Throws an exception if the extract process fails reading or writing files
@@ -46,8 +46,7 @@ public class ExtractReutersNews
         
         WriteFile.createFolder(dataDirPath);
         
-        ExtractReuters extractor = new ExtractReuters(sgmPath, dataPath);
-        extractor.extract();
+        new ReutersSgmParser().extract(sgmPath, dataPath);
     }
     
     /**
@@ -0,0 +1,244 @@
+package edu.co.usbcali.ir.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the search, clustering and indexing phases, so the CPU and allocation
+ * samples of a recording can be tied to the request or the indexed file that caused them: the samples of a
+ * thread between the start and end of an event belong to it. The events are in the Reuters IR category and
+ * are enabled with the reuters.jfc configuration, without stack traces, e.g.
+ * -XX:StartFlightRecording=settings=reuters.jfc,filename=reuters.jfr. Each event is begun before its phase
+ * and committed after it. When the events are not enabled the commit does nothing, and the JIT can remove the
+ * event objects, so the events cost almost nothing without a recording. The jdk.jfr API is only in Java
+ * 8u262 or later, so the build needs one of those versions; when the servlet container runs on an older or
+ * trimmed runtime without it, {@link #ENABLED} is false and the events are skipped
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class FlightRecorderEvents
+{
+    /**
+     * Whether the runtime has the jdk.jfr API, checked once. The events must only be created when it is true
+     */
+    public static final boolean ENABLED = isAvailable();
+    
+    /**
+     * A search request, from the query parsing to the internal evaluation of its clusters
+     */
+    @Name("edu.co.usbcali.ir.SearchRequest")
+    @Label("Search Request")
+    @Category({ "Reuters IR", "Search" })
+    @Description("Search of a query with its clustering and evaluation")
+    @StackTrace(false)
+    public static class SearchRequest extends Event
+    {
+        @Label("Query")
+        public String query;
+        
+        @Label("Clustered")
+        public boolean cluster;
+        
+        @Label("Max Results")
+        public int results;
+        
+        @Label("Partial")
+        @Description("The search, the clustering or the highlighting was stopped by the time budget")
+        public boolean partial;
+    }
+    
+    /**
+     * Parsing of a search query
+     */
+    @Name("edu.co.usbcali.ir.QueryParse")
+    @Label("Query Parse")
+    @Category({ "Reuters IR", "Search" })
+    @StackTrace(false)
+    public static class QueryParse extends Event
+    {
+        @Label("Query")
+        public String query;
+    }
+    
+    /**
+     * Search of a parsed query in the index
+     */
+    @Name("edu.co.usbcali.ir.IndexSearch")
+    @Label("Index Search")
+    @Category({ "Reuters IR", "Search" })
+    @StackTrace(false)
+    public static class IndexSearch extends Event
+    {
+        @Label("Query")
+        public String query;
+        
+        @Label("Total Hits")
+        public long hits;
+        
+        @Label("Recovered Documents")
+        public int documents;
+        
+        @Label("Segments")
+        public int segments;
+        
+        @Label("Partial")
+        @Description("The search was stopped by the time budget")
+        public boolean partial;
+    }
+    
+    /**
+     * Loading of the stored fields of the recovered documents
+     */
+    @Name("edu.co.usbcali.ir.StoredFieldsFetch")
+    @Label("Stored Fields Fetch")
+    @Category({ "Reuters IR", "Search" })
+    @StackTrace(false)
+    public static class StoredFieldsFetch extends Event
+    {
+        @Label("Query")
+        public String query;
+        
+        @Label("Documents")
+        public int documents;
+        
+        @Label("Characters")
+        @Description("Characters of the loaded stored fields")
+        public long characters;
+    }
+    
+    /**
+     * Highlighting of the snippets of the recovered documents from their term vectors
+     */
+    @Name("edu.co.usbcali.ir.Highlighting")
+    @Label("Snippet Highlighting")
+    @Category({ "Reuters IR", "Search" })
+    @StackTrace(false)
+    public static class Highlighting extends Event
+    {
+        @Label("Query")
+        public String query;
+        
+        @Label("Documents")
+        @Description("News highlighted before the time budget was spent")
+        public int documents;
+        
+        @Label("Snippets")
+        public int snippets;
+        
+        @Label("Characters")
+        @Description("Characters of the highlighted snippets, with the tags")
+        public long characters;
+    }
+    
+    /**
+     * Covering Array clustering of the recovered documents, with its refinement
+     */
+    @Name("edu.co.usbcali.ir.Clustering")
+    @Label("Covering Array Clustering")
+    @Category({ "Reuters IR", "Clustering" })
+    @StackTrace(false)
+    public static class Clustering extends Event
+    {
+        @Label("Query")
+        public String query;
+        
+        @Label("Documents")
+        public int documents;
+        
+        @Label("Rows Evaluated")
+        @Description("Covering Array lines evaluated")
+        public int rows;
+        
+        @Label("Clusters")
+        public int clusters;
+        
+        @Label("Refinement")
+        public String refinement;
+        
+        @Label("Partial")
+        @Description("The clustering was stopped by the time budget")
+        public boolean partial;
+    }
+    
+    /**
+     * Internal evaluation of the clusters: SSB, SSW and Silhouette Coefficient
+     */
+    @Name("edu.co.usbcali.ir.InternalEvaluation")
+    @Label("Internal Evaluation")
+    @Category({ "Reuters IR", "Clustering" })
+    @StackTrace(false)
+    public static class Evaluation extends Event
+    {
+        @Label("Query")
+        public String query;
+        
+        @Label("Documents")
+        public int documents;
+        
+        @Label("Clusters")
+        public int clusters;
+    }
+    
+    /**
+     * Indexing of a TXT news file
+     */
+    @Name("edu.co.usbcali.ir.FileIndexing")
+    @Label("File Indexing")
+    @Category({ "Reuters IR", "Indexing" })
+    @StackTrace(false)
+    public static class FileIndexing extends Event
+    {
+        @Label("File")
+        public String file;
+        
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+        
+        @Label("Indexed Documents")
+        @Description("Documents in the index writer after the file")
+        public int documents;
+    }
+    
+    /**
+     * Extraction of the news of a Reuters SGM file
+     */
+    @Name("edu.co.usbcali.ir.SgmExtraction")
+    @Label("SGM Extraction")
+    @Category({ "Reuters IR", "Indexing" })
+    @StackTrace(false)
+    public static class SgmExtraction extends Event
+    {
+        @Label("File")
+        public String file;
+        
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+        
+        @Label("News")
+        public int news;
+    }
+    
+    /**
+     * Checks whether the jdk.jfr API can be loaded, without initializing it
+     * @return True if the runtime has the jdk.jfr API
+     */
+    private static boolean isAvailable()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError ex)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexDeletionPolicy;
+import org.apache.lucene.replicator.IndexInputInputStream;
+import org.apache.lucene.replicator.IndexRevision;
+import org.apache.lucene.replicator.LocalReplicator;
+import org.apache.lucene.replicator.Replicator;
+import org.apache.lucene.replicator.Revision;
+import org.apache.lucene.replicator.RevisionFile;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+
+/**
+ * Publishes the index commits of a primary to its replicas with the Lucene replicator. The Indexer closes
+ * its index writer after each index creation, so the published commit is not a snapshot of an open writer:
+ * the index writers of the primary use the deletion policy of the publisher, which keeps only the last
+ * commit and the published commits that the replicas can still be copying, until the replicator releases
+ * them
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class IndexPublisher
+{
+    /**
+     * Publishers for each index directory
+     */
+    private static final Map<String, IndexPublisher> INSTANCES = new ConcurrentHashMap<>();
+    
+    /**
+     * Replicator that keeps the last published revision and the sessions of the replicas
+     */
+    private LocalReplicator replicator;
+    
+    /**
+     * Index directory
+     */
+    private Directory indexDirectory;
+    
+    /**
+     * Generations of the published commits that are not released by the replicator
+     */
+    private Set<Long> publishedGenerations;
+    
+    /**
+     * Generation of the last published commit, or -1 if no commit is published
+     */
+    private volatile long generation = -1;
+    
+    /**
+     * Time when the last commit was published, in milliseconds
+     */
+    private volatile long publishTime;
+    
+    /**
+     * Opens the index directory of the publisher
+     * @param indexDirPath Path from the index files
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    private IndexPublisher(String indexDirPath) throws IOException
+    {
+        replicator = new LocalReplicator();
+        indexDirectory = FSDirectory.open(Paths.get(indexDirPath));
+        publishedGenerations = ConcurrentHashMap.newKeySet();
+    }
+    
+    /**
+     * Gets the publisher for an index directory, opening it in the first call
+     * @param indexDirPath Path from the index files
+     * @return Publisher for the index directory
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public static IndexPublisher getInstance(String indexDirPath) throws IOException
+    {
+        IndexPublisher instance = INSTANCES.get(indexDirPath);
+        if (instance != null)
+        {
+            return instance;
+        }
+        
+        synchronized (INSTANCES)
+        {
+            instance = INSTANCES.get(indexDirPath);
+            if (instance == null)
+            {
+                instance = new IndexPublisher(indexDirPath);
+                INSTANCES.put(indexDirPath, instance);
+            }
+        }
+        
+        return instance;
+    }
+    
+    /**
+     * Publishes the last commit of the index, if it was not already published. The replicas get it the next
+     * time they check for updates
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public synchronized void publish() throws IOException
+    {
+        if (!DirectoryReader.indexExists(indexDirectory))
+        {
+            return;
+        }
+        
+        List<IndexCommit> commits = DirectoryReader.listCommits(indexDirectory);
+        IndexCommit commit = commits.get(commits.size() - 1);
+        if (commit.getGeneration() == generation)
+        {
+            return;
+        }
+        
+        publishedGenerations.add(commit.getGeneration());
+        try
+        {
+            replicator.publish(new CommitRevision(commit));
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            publishedGenerations.remove(commit.getGeneration());
+            throw ex;
+        }
+        
+        generation = commit.getGeneration();
+        publishTime = System.currentTimeMillis();
+    }
+    
+    /**
+     * Gets the deletion policy for the index writers of the primary, which must not delete the published
+     * commits
+     * @return Index deletion policy
+     */
+    public IndexDeletionPolicy getDeletionPolicy()
+    {
+        return new PublishedCommitsDeletionPolicy();
+    }
+    
+    /**
+     * Gets the replicator served to the replicas
+     * @return Replicator of the index
+     */
+    public Replicator getReplicator()
+    {
+        return replicator;
+    }
+    
+    /**
+     * Gets the generation of the last published commit
+     * @return Index commit generation, or -1 if no commit is published
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+    
+    /**
+     * Gets the time when the last commit was published
+     * @return Publish time in milliseconds, or 0 if no commit is published
+     */
+    public long getPublishTime()
+    {
+        return publishTime;
+    }
+    
+    /**
+     * Gets the number of published commits that are kept for the replicas
+     * @return Number of published commits not released
+     */
+    public int getPublishedCommits()
+    {
+        return publishedGenerations.size();
+    }
+    
+    /**
+     * Deletion policy that keeps the last commit and the published commits that are not released
+     */
+    private class PublishedCommitsDeletionPolicy extends IndexDeletionPolicy
+    {
+        /**
+         * Deletes the old commits when the index writer is opened
+         * @param commits Commits of the index, from the oldest to the newest
+         */
+        @Override
+        public void onInit(List<? extends IndexCommit> commits)
+        {
+            onCommit(commits);
+        }
+        
+        /**
+         * Deletes all the commits but the last one and the published ones
+         * @param commits Commits of the index, from the oldest to the newest
+         */
+        @Override
+        public void onCommit(List<? extends IndexCommit> commits)
+        {
+            for (int i = 0; i < commits.size() - 1; i++)
+            {
+                IndexCommit commit = commits.get(i);
+                if (!publishedGenerations.contains(commit.getGeneration()))
+                {
+                    commit.delete();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Revision of the replicator with the files of a published commit, in the same source and version format
+     * as the revisions of an index writer, so the replicas use the Lucene index replication handler
+     */
+    private class CommitRevision implements Revision
+    {
+        /**
+         * Published commit
+         */
+        private IndexCommit commit;
+        
+        /**
+         * Files of the commit, with the segments file at the end
+         */
+        private Map<String, List<RevisionFile>> sourceFiles;
+        
+        /**
+         * Lists the files of a commit
+         * @param commit Published commit
+         * @throws IOException Throws an exception when the file sizes cannot be read
+         */
+        private CommitRevision(IndexCommit commit) throws IOException
+        {
+            this.commit = commit;
+            this.sourceFiles = IndexRevision.revisionFiles(commit);
+        }
+        
+        @Override
+        public int compareTo(String version)
+        {
+            return Long.compare(commit.getGeneration(), Long.parseLong(version, 16));
+        }
+        
+        @Override
+        public int compareTo(Revision revision)
+        {
+            return compareTo(revision.getVersion());
+        }
+        
+        @Override
+        public String getVersion()
+        {
+            return IndexRevision.revisionVersion(commit);
+        }
+        
+        @Override
+        public Map<String, List<RevisionFile>> getSourceFiles()
+        {
+            return sourceFiles;
+        }
+        
+        @Override
+        public InputStream open(String source, String fileName) throws IOException
+        {
+            return new IndexInputInputStream(commit.getDirectory().openInput(fileName, IOContext.READONCE));
+        }
+        
+        /**
+         * Lets the deletion policy delete the commit, which is removed the next time an index writer is
+         * opened or commits
+         */
+        @Override
+        public void release()
+        {
+            publishedGenerations.remove(commit.getGeneration());
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.replicator.IndexReplicationHandler;
+import org.apache.lucene.replicator.PerSessionDirectoryFactory;
+import org.apache.lucene.replicator.ReplicationClient;
+import org.apache.lucene.replicator.http.HttpReplicator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import edu.co.usbcali.ir.constants.ReplicationConstants;
+
+/**
+ * Read-only replica of the index of a primary. A daemon thread checks the primary for a new commit, copies
+ * only the files that the replica does not have to a session directory next to the index, moves them to the
+ * index and reopens the shared searcher, so the searches swap to the new commit atomically. The lag is the
+ * time since the start of the last successful check, because the replica had all the commits published
+ * before it. The commit time written by the primary gives the delay from the commit to the searcher swap
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class IndexReplica implements Closeable
+{
+    /**
+     * Replica of the node, or null if the node is not a replica
+     */
+    private static volatile IndexReplica instance;
+    
+    /**
+     * URL of the primary web application
+     */
+    private String primaryUrl;
+    
+    /**
+     * Path from the index files
+     */
+    private String indexDirPath;
+    
+    /**
+     * Index directory
+     */
+    private Directory indexDirectory;
+    
+    /**
+     * Replicator that requests the commits to the primary over HTTP
+     */
+    private HttpReplicator replicator;
+    
+    /**
+     * Client that copies the new files of each commit to the index
+     */
+    private ReplicationClient client;
+    
+    /**
+     * Thread that checks the primary for new commits
+     */
+    private ScheduledExecutorService scheduler;
+    
+    /**
+     * Number of checks done
+     */
+    private volatile long checks;
+    
+    /**
+     * Number of commits copied from the primary
+     */
+    private volatile long updates;
+    
+    /**
+     * Number of checks that failed
+     */
+    private volatile long errors;
+    
+    /**
+     * Message of the last failed check
+     */
+    private volatile String lastError;
+    
+    /**
+     * Time when the last successful check started, in milliseconds, or 0 if no check succeeded
+     */
+    private volatile long lastCheckTime;
+    
+    /**
+     * Time when the searcher was swapped to the last copied commit, in milliseconds
+     */
+    private volatile long lastUpdateTime;
+    
+    /**
+     * Milliseconds from the primary commit to the searcher swap of the last copied commit
+     */
+    private volatile long lastUpdateDelay = -1;
+    
+    /**
+     * Configures the replica of the index of a primary
+     * @param indexDirPath Path from the index files
+     * @param primaryUrl URL of the primary web application
+     * @throws IOException Throws an exception when there is a problem in the index directory or the URL
+     */
+    private IndexReplica(String indexDirPath, String primaryUrl) throws IOException
+    {
+        this.indexDirPath = indexDirPath;
+        this.primaryUrl = primaryUrl;
+        
+        Path indexDir = Paths.get(indexDirPath);
+        Path sessionsDir = indexDir.resolveSibling(indexDir.getFileName() + "-replica");
+        indexDirectory = FSDirectory.open(indexDir);
+        
+        URL url = new URL(primaryUrl);
+        String path = url.getPath().replaceAll("/$", "")
+            + ReplicationConstants.SERVLET_PATH.replace("/*", "/") + ReplicationConstants.SHARD;
+        replicator = new HttpReplicator(url.getHost(), url.getPort() != -1 ? url.getPort() : url.getDefaultPort(),
+            path, new PoolingHttpClientConnectionManager());
+        
+        IndexReplicationHandler handler = new IndexReplicationHandler(indexDirectory, this::swapSearcher);
+        client = new ReplicationClient(replicator, handler, new PerSessionDirectoryFactory(sessionsDir));
+    }
+    
+    /**
+     * Starts the replica of the node: copies the last commit of the primary, if it can be reached, and then
+     * checks it for new commits periodically
+     * @param indexDirPath Path from the index files
+     * @param primaryUrl URL of the primary web application
+     * @param intervalMillis Milliseconds between the checks
+     * @return Replica of the node
+     * @throws IOException Throws an exception when there is a problem in the index directory or the URL
+     */
+    public static synchronized IndexReplica start(String indexDirPath, String primaryUrl, long intervalMillis)
+        throws IOException
+    {
+        if (instance != null)
+        {
+            return instance;
+        }
+        
+        IndexReplica replica = new IndexReplica(indexDirPath, primaryUrl);
+        replica.update();
+        
+        replica.scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "ir-replica");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replica.scheduler.scheduleWithFixedDelay(replica::update, intervalMillis, intervalMillis,
+            TimeUnit.MILLISECONDS);
+        
+        instance = replica;
+        return replica;
+    }
+    
+    /**
+     * Gets the replica of the node
+     * @return Replica of the node, or null if the node is not a replica
+     */
+    public static IndexReplica getInstance()
+    {
+        return instance;
+    }
+    
+    /**
+     * Stops the replica of the node, if it was started
+     */
+    public static synchronized void stop()
+    {
+        if (instance != null)
+        {
+            instance.close();
+            instance = null;
+        }
+    }
+    
+    /**
+     * Checks the primary for a new commit and copies it. A failed check is counted and retried in the next
+     * check, because the primary can be restarting
+     */
+    private void update()
+    {
+        long startTime = System.currentTimeMillis();
+        try
+        {
+            client.updateNow();
+            lastCheckTime = startTime;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            errors++;
+            lastError = ex.toString();
+        }
+        finally
+        {
+            checks++;
+        }
+    }
+    
+    /**
+     * Reopens the shared searcher after the files of a new commit are moved to the index, so the new
+     * searches use the commit and the running searches finish with the previous one. The near-duplicate
+     * groups of the commit are built before the searcher is reopened, and the query suggesters after it. If
+     * the suggesters cannot be built, the loaded ones are discarded so they are built again in the background
+     * after the next suggestion
+     * @return True, to let the replication handler delete the files of the previous commits
+     * @throws IOException Throws an exception when the index cannot be reopened
+     */
+    private Boolean swapSearcher() throws IOException
+    {
+        try
+        {
+            LshIndex.build(indexDirPath);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            lastError = ex.toString();
+        }
+        
+        SharedSearcher.refresh(indexDirPath);
+        
+        try
+        {
+            Suggester.build(indexDirPath);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            Suggester.invalidate(indexDirPath);
+            lastError = ex.toString();
+        }
+        
+        lastUpdateTime = System.currentTimeMillis();
+        updates++;
+        
+        String commitTime = getCommit().getUserData().get(ReplicationConstants.COMMIT_TIME);
+        lastUpdateDelay = commitTime != null ? lastUpdateTime - Long.parseLong(commitTime) : -1;
+        
+        return true;
+    }
+    
+    /**
+     * Gets the last commit copied to the index
+     * @return Last index commit, or null if no commit was copied
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    private IndexCommit getCommit() throws IOException
+    {
+        return IndexReplicationHandler.getLastCommit(indexDirectory);
+    }
+    
+    /**
+     * Gets the generation of the last commit copied to the index
+     * @return Index commit generation, or -1 if no commit was copied
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public long getGeneration() throws IOException
+    {
+        IndexCommit commit = getCommit();
+        return commit != null ? commit.getGeneration() : -1;
+    }
+    
+    /**
+     * Indicates if the replica has an index to search, which is after it copies its first commit
+     * @return True if the replica has an index
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public boolean hasIndex() throws IOException
+    {
+        return getCommit() != null;
+    }
+    
+    /**
+     * Gets the time since the start of the last successful check, an upper bound of the time the replica is
+     * behind the primary
+     * @return Lag in milliseconds, or -1 if no check succeeded
+     */
+    public long getLag()
+    {
+        long checkTime = lastCheckTime;
+        return checkTime > 0 ? System.currentTimeMillis() - checkTime : -1;
+    }
+    
+    /**
+     * Gets the URL of the primary web application
+     * @return Primary URL
+     */
+    public String getPrimaryUrl()
+    {
+        return primaryUrl;
+    }
+    
+    /**
+     * Gets the number of checks done
+     * @return Number of checks
+     */
+    public long getChecks()
+    {
+        return checks;
+    }
+    
+    /**
+     * Gets the number of commits copied from the primary
+     * @return Number of copied commits
+     */
+    public long getUpdates()
+    {
+        return updates;
+    }
+    
+    /**
+     * Gets the number of checks that failed
+     * @return Number of failed checks
+     */
+    public long getErrors()
+    {
+        return errors;
+    }
+    
+    /**
+     * Gets the message of the last failed check
+     * @return Error message, or null if no check failed
+     */
+    public String getLastError()
+    {
+        return lastError;
+    }
+    
+    /**
+     * Gets the time when the searcher was swapped to the last copied commit
+     * @return Swap time in milliseconds, or 0 if no commit was copied
+     */
+    public long getLastUpdateTime()
+    {
+        return lastUpdateTime;
+    }
+    
+    /**
+     * Gets the delay from the primary commit to the searcher swap of the last copied commit, which assumes
+     * that the clocks of the primary and the replica are synchronized, as in several processes of one machine
+     * @return Delay in milliseconds, or -1 if no commit was copied
+     */
+    public long getLastUpdateDelay()
+    {
+        return lastUpdateDelay;
+    }
+    
+    /**
+     * Stops the checks and closes the connection to the primary
+     */
+    @Override
+    public void close()
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+        }
+        
+        client.close();
+        try
+        {
+            replicator.close();
+            indexDirectory.close();
+        }
+        catch (IOException ex)
+        {
+            lastError = ex.toString();
+        }
+    }
+}
@@ -6,18 +6,29 @@ import java.io.FileFilter;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import edu.co.usbcali.ir.constants.LuceneConstants;
+import edu.co.usbcali.ir.constants.ReplicationConstants;
+import edu.co.usbcali.ir.util.FlightRecorderEvents;
 
 /**
  * Generates the index files adding all the TXT documents with news
@@ -32,7 +43,31 @@ public class Indexer
     private IndexWriter writer;
 
     /**
-     * Configures the index writer for index the files in a directory
+     * Telemetry of the flushes, merges and throughput of the index creation
+     */
+    private IndexingTelemetry telemetry;
+    
+    /**
+     * Path to save the index files
+     */
+    private String indexDirPath;
+    
+    /**
+     * RAM buffer size in MB, configured with the system property ir.index.ramBufferMB
+     */
+    private static final double RAM_BUFFER_MB = Double.parseDouble(System.getProperty("ir.index.ramBufferMB",
+        String.valueOf(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB)));
+    
+    /**
+     * Segments allowed in each tier of the merge policy, configured with the system property
+     * ir.index.segmentsPerTier
+     */
+    private static final double SEGMENTS_PER_TIER = Double.parseDouble(
+        System.getProperty("ir.index.segmentsPerTier", "10"));
+
+    /**
+     * Configures the index writer for index the files in a directory, capturing its flushes and merges in
+     * the indexing telemetry. In a replication primary the writer keeps the commits published to the replicas
      * @param indexDirPath Path to save the index files
      * @throws IOException Throws an exception when there is a problem in the index directory
      */
@@ -41,27 +76,70 @@ public class Indexer
         FSDirectory indexDirectory = FSDirectory.open(Paths.get(indexDirPath));
         IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
         
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setSegmentsPerTier(SEGMENTS_PER_TIER);
+        
+        telemetry = new IndexingTelemetry(RAM_BUFFER_MB, mergePolicy);
+        config.setRAMBufferSizeMB(RAM_BUFFER_MB);
+        config.setMergePolicy(mergePolicy);
+        config.setMergeScheduler(telemetry.getMergeScheduler());
+        config.setInfoStream(telemetry.getInfoStream());
+        
+        if (ReplicationConstants.isPrimary())
+        {
+            config.setIndexDeletionPolicy(IndexPublisher.getInstance(indexDirPath).getDeletionPolicy());
+        }
+        
         writer = new IndexWriter(indexDirectory, config);
+        this.indexDirPath = indexDirPath;
     }
 
     /**
-     * Closes the index writer object
+     * Closes the index writer object, committing the index with its commit time, and publishes the commit to
+     * the replicas if the node is a replication primary
      * @throws CorruptIndexException Throws an exception when the index writer object has a problem
      * @throws IOException Throws an exception when there is a problem working in the directory
      */
     public void close() throws CorruptIndexException, IOException
     {
+        long ramBytes = writer.ramBytesUsed();
+        writer.setLiveCommitData(Collections.singletonMap(ReplicationConstants.COMMIT_TIME,
+            String.valueOf(System.currentTimeMillis())).entrySet());
         writer.close();
+        telemetry.end(ramBytes);
+        
+        if (ReplicationConstants.isPrimary())
+        {
+            IndexPublisher.getInstance(indexDirPath).publish();
+        }
     }
 
     /**
-     * Generates a Document object from a news saved in a TXT. The document has the news content, file name
-     * and the file path to access it in the server
+     * Generates a Document object from a news saved in a TXT. The document has the news content, file name,
+     * the file path to access it in the server, the MinHash signature of the content to find its
+     * near-duplicates, the title for the query suggestions and the date, topics and places for the filters
      * @param file TXT file with a news
      * @return Document with the required info
      * @throws IOException Throws an exception if the file cannot be loaded successfully
      */
     private Document getDocument(File file) throws IOException
+    {
+        return getDocument(getContent(file), NewsMetadata.read(file), file.getName(), file.getCanonicalPath());
+    }
+    
+    /**
+     * Generates a Document object from a news content with the index schema, so the benchmarks can index the
+     * news with the same fields as the index files. The date is indexed as a point for the range filters
+     * and as doc values for the order, and the topics and places as keywords for the filters and as doc
+     * values, and all of them are stored
+     * @param content News content
+     * @param metadata Structured fields of the news: title, date, topics and places
+     * @param fileName Name of the TXT file with the news
+     * @param filePath Canonical path of the TXT file with the news
+     * @return Document with the required info
+     */
+    public static Document getDocument(String content, NewsMetadata metadata, String fileName,
+        String filePath)
     {
         Document document = new Document();
         
@@ -74,24 +152,57 @@ public class Indexer
         type.setStoreTermVectorOffsets(true);
         type.setStoreTermVectorPayloads(true);
         
-        Field contentField = new Field(LuceneConstants.CONTENTS, getContent(file), type);
-        Field fileNameField = new Field(LuceneConstants.FILE_NAME, file.getName(), type);
-        Field filePathField = new Field(LuceneConstants.FILE_PATH, file.getCanonicalPath(), type);
+        Field contentField = new Field(LuceneConstants.CONTENTS, content, type);
+        Field fileNameField = new Field(LuceneConstants.FILE_NAME, fileName, type);
+        Field filePathField = new Field(LuceneConstants.FILE_PATH, filePath, type);
+        Field minHashField = new StoredField(LuceneConstants.MIN_HASH, 
+            MinHash.toBytes(MinHash.getSignature(content)));
 
         document.add(contentField);
         document.add(fileNameField);
         document.add(filePathField);
+        document.add(minHashField);
+        
+        if (!metadata.getTitle().isEmpty())
+        {
+            document.add(new StoredField(LuceneConstants.TITLE, metadata.getTitle()));
+        }
+
+        if (metadata.getDate() != NewsMetadata.NO_DATE)
+        {
+            document.add(new LongPoint(LuceneConstants.DATE, metadata.getDate()));
+            document.add(new NumericDocValuesField(LuceneConstants.DATE, metadata.getDate()));
+            document.add(new StoredField(LuceneConstants.DATE, metadata.getDate()));
+        }
+        
+        addKeywords(document, LuceneConstants.TOPICS, metadata.getTopics());
+        addKeywords(document, LuceneConstants.PLACES, metadata.getPlaces());
 
         return document;
     }
     
+    /**
+     * Adds the values of a keyword field to a document, indexed without analysis and as sorted set doc values
+     * @param document Document of a news
+     * @param field Keyword field
+     * @param values Field values
+     */
+    private static void addKeywords(Document document, String field, List<String> values)
+    {
+        for (String value : values)
+        {
+            document.add(new StringField(field, value, Field.Store.YES));
+            document.add(new SortedSetDocValuesField(field, new BytesRef(value)));
+        }
+    }
+    
     /**
      * Gets the news content from a TXT file
      * @param file TXT file with a news
      * @return String with the news content
      * @throws IOException Throws an exception if the file cannot be loaded successfully
      */
-    private String getContent(File file) throws IOException
+    public static String getContent(File file) throws IOException
     {
         String content = "";
         try (FileReader reader = new FileReader(file))
@@ -108,6 +219,36 @@ public class Indexer
         return content;
     }
 
+    /**
+     * Gets the news title from a TXT file. The extracted news have the date, the title and the body separated
+     * by blank lines, and the Reuters titles are written in capital letters, so a news without title has its
+     * body in place of the title
+     * @param file TXT file with a news
+     * @return News title, or an empty string if the news has no title
+     * @throws IOException Throws an exception if the file cannot be loaded successfully
+     */
+    public static String getTitle(File file) throws IOException
+    {
+        try (BufferedReader buffer = new BufferedReader(new FileReader(file)))
+        {
+            int block = 0;
+            boolean blank = true;
+            String line;
+            
+            while ((line = buffer.readLine()) != null)
+            {
+                line = line.trim();
+                if (!line.isEmpty() && blank && ++block == 2)
+                {
+                    return line.equals(line.toUpperCase()) ? line : "";
+                }
+                blank = line.isEmpty();
+            }
+        }
+        
+        return "";
+    }
+
     /**
      * Adds a document to the index using the configured index writer
      * @param file TXT file with a news to generate a Document
@@ -115,8 +256,24 @@ public class Indexer
      */
     private void indexFile(File file) throws IOException
     {
+        FlightRecorderEvents.FileIndexing event = null;
+        if (FlightRecorderEvents.ENABLED)
+        {
+            event = new FlightRecorderEvents.FileIndexing();
+            event.begin();
+        }
+        
         Document document = getDocument(file);
         writer.addDocument(document);
+        telemetry.addDocument(writer);
+        
+        if (event != null)
+        {
+            event.file = file.getName();
+            event.bytes = file.length();
+            event.documents = writer.maxDoc();
+            event.commit();
+        }
     }
 
     /**
@@ -0,0 +1,461 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.util.InfoStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Telemetry of an index creation taken from the IndexWriter internals: the flushes and flush stalls reported
+ * by the InfoStream, the merges and merge stalls of the merge scheduler, and samples of the indexed documents
+ * per second and the RAM used by the writer. The telemetry of the last index creation is kept to be reported
+ * while it runs and after it finishes
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class IndexingTelemetry
+{
+    /**
+     * Min time between two throughput samples in nanoseconds
+     */
+    private static final long SAMPLE_INTERVAL = 1000000000L;
+    
+    /**
+     * Max number of flushes, merges and samples kept, the older ones are only counted in the totals
+     */
+    private static final int MAX_EVENTS = 1000;
+    
+    /**
+     * InfoStream message of a flushed segment, with the RAM used and the flushed size in MB
+     */
+    private static final Pattern FLUSHED = Pattern.compile(
+        "flushed: segment=(\\S+) ramUsed=([\\d.,]+) MB newFlushedSize=([\\d.,]+) MB");
+    
+    /**
+     * InfoStream message of the documents in a flushed segment
+     */
+    private static final Pattern FLUSH_DOCS = Pattern.compile(
+        "flush postings as segment (\\S+) numDocs=(\\d+)");
+    
+    /**
+     * InfoStream message of the flush time in milliseconds
+     */
+    private static final Pattern FLUSH_TIME = Pattern.compile("flush time ([\\d.]+) msec");
+    
+    /**
+     * InfoStream message of the DW component with the time the indexing threads were stalled waiting for the
+     * flushes
+     */
+    private static final Pattern FLUSH_STALL = Pattern.compile("done stalling flushes for ([\\d.,]+) msec");
+    
+    /**
+     * Telemetry of the last index creation, or null if no index was created
+     */
+    private static volatile IndexingTelemetry last;
+    
+    /**
+     * RAM buffer size of the writer in MB
+     */
+    private double ramBufferMB;
+    
+    /**
+     * Merge policy of the writer
+     */
+    private String mergePolicy;
+    
+    /**
+     * Start time of the index creation from {@link System#nanoTime()}
+     */
+    private long startTime = System.nanoTime();
+    
+    /**
+     * Elapsed time of the index creation in nanoseconds, or -1 while it runs
+     */
+    private volatile long elapsedTime = -1;
+    
+    /**
+     * Number of documents added to the writer
+     */
+    private AtomicInteger documents = new AtomicInteger();
+    
+    /**
+     * Time of the last throughput sample from {@link System#nanoTime()}
+     */
+    private long sampleTime = startTime;
+    
+    /**
+     * Number of documents added at the last throughput sample
+     */
+    private int sampleDocuments;
+    
+    /**
+     * Throughput samples: seconds since the start, documents per second and RAM used in MB
+     */
+    private List<double[]> samples = new ArrayList<>();
+    
+    /**
+     * Flushes: documents, RAM used in MB, flushed size in MB and flush time in milliseconds
+     */
+    private List<double[]> flushes = new ArrayList<>();
+    
+    /**
+     * Documents of the flush in progress for each indexing thread
+     */
+    private ThreadLocal<double[]> currentFlush = new ThreadLocal<>();
+    
+    /**
+     * Number of flushes
+     */
+    private AtomicInteger flushCount = new AtomicInteger();
+    
+    /**
+     * Time the indexing threads were stalled waiting for the flushes in nanoseconds
+     */
+    private AtomicLong flushStallTime = new AtomicLong();
+    
+    /**
+     * Merges: segments, documents, size in MB and merge time in milliseconds
+     */
+    private List<double[]> merges = new ArrayList<>();
+    
+    /**
+     * Number of merges
+     */
+    private AtomicInteger mergeCount = new AtomicInteger();
+    
+    /**
+     * Size of all the merges in bytes
+     */
+    private AtomicLong mergeBytes = new AtomicLong();
+    
+    /**
+     * Time of all the merges in nanoseconds
+     */
+    private AtomicLong mergeTime = new AtomicLong();
+    
+    /**
+     * Time the indexing threads were stalled waiting for the merges in nanoseconds
+     */
+    private AtomicLong mergeStallTime = new AtomicLong();
+    
+    /**
+     * Initializes the telemetry of an index creation, which becomes the last one reported
+     * @param ramBufferMB RAM buffer size of the writer in MB
+     * @param mergePolicy Merge policy of the writer
+     */
+    public IndexingTelemetry(double ramBufferMB, MergePolicy mergePolicy)
+    {
+        this.ramBufferMB = ramBufferMB;
+        this.mergePolicy = mergePolicy.toString();
+        
+        last = this;
+    }
+    
+    /**
+     * Gets the telemetry of the last index creation
+     * @return Last telemetry, or null if no index was created
+     */
+    public static IndexingTelemetry getLast()
+    {
+        return last;
+    }
+    
+    /**
+     * Creates the InfoStream that adds the flush events to this telemetry. The flushes are reported by the
+     * DWPT component and the flush stalls by the DW component, and the other messages of the enabled
+     * components are ignored because they match none of the patterns
+     * @return InfoStream for the IndexWriter configuration
+     */
+    public InfoStream getInfoStream()
+    {
+        return new InfoStream()
+        {
+            @Override
+            public boolean isEnabled(String component)
+            {
+                return "DWPT".equals(component) || "DWFC".equals(component) || "DW".equals(component);
+            }
+            
+            @Override
+            public void message(String component, String message)
+            {
+                addMessage(message);
+            }
+            
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+    
+    /**
+     * Creates the merge scheduler that adds the merges and merge stalls to this telemetry
+     * @return Merge scheduler for the IndexWriter configuration
+     */
+    public ConcurrentMergeScheduler getMergeScheduler()
+    {
+        return new ConcurrentMergeScheduler()
+        {
+            @Override
+            protected void doMerge(IndexWriter writer, MergePolicy.OneMerge merge) throws IOException
+            {
+                long mergeStartTime = System.nanoTime();
+                super.doMerge(writer, merge);
+                addMerge(merge, System.nanoTime() - mergeStartTime);
+            }
+            
+            @Override
+            protected synchronized boolean maybeStall(IndexWriter writer)
+            {
+                long stallStartTime = System.nanoTime();
+                boolean result = super.maybeStall(writer);
+                mergeStallTime.addAndGet(System.nanoTime() - stallStartTime);
+                
+                return result;
+            }
+        };
+    }
+    
+    /**
+     * Counts a document added to the writer, taking a throughput sample when the sample interval is passed
+     * @param writer Index writer, to get the RAM used
+     */
+    public void addDocument(IndexWriter writer)
+    {
+        int count = documents.incrementAndGet();
+        long now = System.nanoTime();
+        
+        if (now - sampleTime >= SAMPLE_INTERVAL)
+        {
+            addSample(now, count, writer.ramBytesUsed());
+        }
+    }
+    
+    /**
+     * Ends the index creation after the writer is closed, taking the last throughput sample
+     * @param ramBytes RAM used by the writer before it was closed in bytes
+     */
+    public void end(long ramBytes)
+    {
+        long now = System.nanoTime();
+        addSample(now, documents.get(), ramBytes);
+        
+        elapsedTime = now - startTime;
+    }
+    
+    /**
+     * Adds a throughput sample with the documents per second since the previous sample
+     * @param now Sample time from {@link System#nanoTime()}
+     * @param count Number of documents added
+     * @param ramBytes RAM used by the writer in bytes
+     */
+    private synchronized void addSample(long now, int count, long ramBytes)
+    {
+        if (now == sampleTime)
+        {
+            return;
+        }
+        
+        double seconds = (now - sampleTime) / 1e9;
+        addEvent(samples, new double[] { (now - startTime) / 1e9, (count - sampleDocuments) / seconds,
+            ramBytes / 1048576.0 });
+        
+        sampleTime = now;
+        sampleDocuments = count;
+    }
+    
+    /**
+     * Adds the flush or stall event reported by an InfoStream message. The documents and the size of a flush
+     * are reported in different messages from the flushing thread, so they are joined by thread
+     * @param message InfoStream message
+     */
+    private void addMessage(String message)
+    {
+        Matcher matcher = FLUSH_DOCS.matcher(message);
+        if (matcher.find())
+        {
+            currentFlush.set(new double[] { Double.parseDouble(matcher.group(2)), 0, 0, 0 });
+            return;
+        }
+        
+        matcher = FLUSHED.matcher(message);
+        if (matcher.find() && currentFlush.get() != null)
+        {
+            currentFlush.get()[1] = parseNumber(matcher.group(2));
+            currentFlush.get()[2] = parseNumber(matcher.group(3));
+            return;
+        }
+        
+        matcher = FLUSH_TIME.matcher(message);
+        if (matcher.find() && currentFlush.get() != null)
+        {
+            double[] flush = currentFlush.get();
+            flush[3] = parseNumber(matcher.group(1));
+            currentFlush.remove();
+            
+            flushCount.incrementAndGet();
+            synchronized (this)
+            {
+                addEvent(flushes, flush);
+            }
+            return;
+        }
+        
+        matcher = FLUSH_STALL.matcher(message);
+        if (matcher.find())
+        {
+            flushStallTime.addAndGet((long) (parseNumber(matcher.group(1)) * 1e6));
+        }
+    }
+    
+    /**
+     * Adds a finished merge
+     * @param merge Merged segments
+     * @param time Merge time in nanoseconds
+     * @throws IOException Throws an exception if the size of the merged segments cannot be read
+     */
+    private void addMerge(MergePolicy.OneMerge merge, long time) throws IOException
+    {
+        long bytes = merge.totalBytesSize();
+        mergeCount.incrementAndGet();
+        mergeBytes.addAndGet(bytes);
+        mergeTime.addAndGet(time);
+        
+        synchronized (this)
+        {
+            addEvent(merges, new double[] { merge.segments.size(), merge.totalMaxDoc,
+                bytes / 1048576.0, time / 1e6 });
+        }
+    }
+    
+    /**
+     * Adds an event to a list, removing the oldest event if the list is full
+     * @param events Event list
+     * @param event New event
+     */
+    private static void addEvent(List<double[]> events, double[] event)
+    {
+        if (events.size() == MAX_EVENTS)
+        {
+            events.remove(0);
+        }
+        
+        events.add(event);
+    }
+    
+    /**
+     * Parses a number written by the InfoStream, which may use the default locale
+     * @param number Number text
+     * @return Parsed number
+     */
+    private static double parseNumber(String number)
+    {
+        int comma = number.lastIndexOf(',');
+        int dot = number.lastIndexOf('.');
+        
+        if (comma > dot)
+        {
+            return Double.parseDouble(number.replace(".", "").replace(',', '.'));
+        }
+        
+        return Double.parseDouble(number.replace(",", ""));
+    }
+    
+    /**
+     * Writes the telemetry as a JSON object with the writer configuration, the totals and the events. The
+     * times are in milliseconds and the sizes in MB. The totals and the events are copied under the lock and
+     * written after it is released, so a slow client does not stop the indexing and merging threads
+     * @param generator JSON generator
+     * @throws IOException Throws an exception if the telemetry cannot be written
+     */
+    public void writeJson(JsonGenerator generator) throws IOException
+    {
+        long elapsed;
+        boolean running;
+        int documentCount;
+        List<double[]> flushEvents;
+        List<double[]> mergeEvents;
+        List<double[]> sampleEvents;
+        long flushTotal;
+        long flushStallTotal;
+        long mergeTotal;
+        long mergeBytesTotal;
+        long mergeTimeTotal;
+        long mergeStallTotal;
+        synchronized (this)
+        {
+            running = elapsedTime < 0;
+            elapsed = running ? System.nanoTime() - startTime : elapsedTime;
+            documentCount = documents.get();
+            flushEvents = new ArrayList<>(flushes);
+            mergeEvents = new ArrayList<>(merges);
+            sampleEvents = new ArrayList<>(samples);
+            flushTotal = flushCount.get();
+            flushStallTotal = flushStallTime.get();
+            mergeTotal = mergeCount.get();
+            mergeBytesTotal = mergeBytes.get();
+            mergeTimeTotal = mergeTime.get();
+            mergeStallTotal = mergeStallTime.get();
+        }
+        
+        generator.writeStartObject();
+        generator.writeBooleanField("running", running);
+        generator.writeNumberField("time", elapsed / 1e6);
+        generator.writeNumberField("documents", documentCount);
+        generator.writeNumberField("docsPerSec", documentCount / Math.max(elapsed / 1e9, 1e-9));
+        generator.writeNumberField("ramBufferMB", ramBufferMB);
+        generator.writeStringField("mergePolicy", mergePolicy);
+        
+        generator.writeObjectFieldStart("flush");
+        generator.writeNumberField("count", flushTotal);
+        generator.writeNumberField("stallTime", flushStallTotal / 1e6);
+        writeEvents(generator, "events", flushEvents, "docs", "ramMB", "sizeMB", "time");
+        generator.writeEndObject();
+        
+        generator.writeObjectFieldStart("merge");
+        generator.writeNumberField("count", mergeTotal);
+        generator.writeNumberField("sizeMB", mergeBytesTotal / 1048576.0);
+        generator.writeNumberField("time", mergeTimeTotal / 1e6);
+        generator.writeNumberField("stallTime", mergeStallTotal / 1e6);
+        writeEvents(generator, "events", mergeEvents, "segments", "docs", "sizeMB", "time");
+        generator.writeEndObject();
+        
+        writeEvents(generator, "samples", sampleEvents, "seconds", "docsPerSec", "ramMB");
+        generator.writeEndObject();
+    }
+    
+    /**
+     * Writes a list of events as an array of objects
+     * @param generator JSON generator
+     * @param name Array field name
+     * @param events Event list
+     * @param fields Field name for each event value
+     * @throws IOException Throws an exception if the events cannot be written
+     */
+    private static void writeEvents(JsonGenerator generator, String name, List<double[]> events,
+        String... fields) throws IOException
+    {
+        generator.writeArrayFieldStart(name);
+        for (double[] event : events)
+        {
+            generator.writeStartObject();
+            for (int i = 0; i < fields.length; i++)
+            {
+                generator.writeNumberField(fields[i], event[i]);
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+}
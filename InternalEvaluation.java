@@ -1,10 +1,15 @@
 package edu.co.usbcali.ir.processes;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import org.apache.lucene.search.ScoreDoc;
 
+import edu.co.usbcali.ir.util.Metrics;
+
 /**
  * Realizes the Internal Evaluation Index for the clusters
  * @author Joan Romero
@@ -18,20 +23,19 @@ public class InternalEvaluation
     private List<List<Integer>> clusters;
     
     /**
-     * Recovered documents
+     * Score for each recovered document
      */
-    private ScoreDoc[] scoreDocs;
+    private float[] scores;
     
     /**
-     * Centroids' list for each cluster
+     * Count, sum and square sum for each cluster, accumulated in a single pass
      */
-    private List<Float> centroids;
-    
+    private ClusterStatistics statistics;
     
     /**
-     * Average for all the recovered documents
+     * Centroids' list for each cluster
      */
-    private float docsAvg;
+    private List<Float> centroids;
     
     /**
      * Initializes the necessary properties for the Internal Evaluation index
@@ -41,10 +45,20 @@ public class InternalEvaluation
     public InternalEvaluation(List<List<Integer>> clusters, ScoreDoc[] scoreDocs)
     {
         this.clusters = clusters;
-        this.scoreDocs = scoreDocs;
         
-        docsAvg = getDocumentsAvg();
-        centroids = getClusterCentroid();
+        scores = new float[scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++)
+        {
+            scores[i] = scoreDocs[i].score;
+        }
+        
+        statistics = ClusterStatistics.fromClusters(clusters, scores);
+        
+        centroids = new ArrayList<>();
+        for (int i = 0; i < clusters.size(); i++)
+        {
+            centroids.add(statistics.getCentroid(i));
+        }
     }
     
     /**
@@ -53,151 +67,323 @@ public class InternalEvaluation
      */
     public Float getSSBResult()
     {
-        List<Float> clustersSSB = getClusterSSB();
-        float ssb = getClustersTestSum(clustersSSB);
-        
-        return ssb;
+        return statistics.getSSB();
     }
     
     /**
-     * Gets the Square Sum Between Clusters (SSB) index for each cluster
-     * @return List with SSB result for each cluster
+     * Gets the Square Sum Within Clusters (SSW) index
+     * @return SSW index result
      */
-    private List<Float> getClusterSSB()
+    public Float getSSWResult()
     {
-        List<Float> clustersSSB = new ArrayList<>();
-        
-        for (int i = 0; i < clusters.size(); i++)
-        {
-            List<Integer> cluster = clusters.get(i);
-            
-            float centroid = centroids.get(i);
-            float docCount = cluster.size();
-            
-            float ssb = (float) (docCount * Math.pow((centroid - docsAvg), 2));
-            clustersSSB.add(ssb);
-        }
-        
-        return clustersSSB;
+        return statistics.getSSW();
     }
     
     /**
-     * Gets the Square Sum Within Clusters (SSW) index
-     * @return SSW index result
+     * Gets the Silhouette Coefficient for the clusters. The documents are represented by their score, so the
+     * one-dimensional algorithm is used
+     * @return Silhouette Coefficient result, between -1 and 1
      */
-    public Float getSSWResult()
+    public Float getSilhouetteResult()
     {
-        List<Float> clustersSSW = getClusterSSW();
-        float ssw = getClustersTestSum(clustersSSW);
+        long startTime = System.nanoTime();
+        
+        int[] labels = new int[scores.length];
+        Arrays.fill(labels, -1);
         
-        return ssw;
+        for (int i = 0; i < clusters.size(); i++)
+        {
+            for (Integer docIndex : clusters.get(i))
+            {
+                if (docIndex < scores.length)
+                {
+                    labels[docIndex] = i;
+                }
+            }
+        }
+        
+        float silhouette = getSilhouette(scores, labels, clusters.size());
+        Metrics.recordPhase(Metrics.SILHOUETTE, startTime);
+        
+        return silhouette;
     }
     
     /**
-     * Gets the Square Sum Within Clusters (SSW) index for each cluster
-     * @return List with SSW result for each cluster
+     * Gets the Silhouette Coefficient for one-dimensional values. Each cluster is sorted once and the
+     * distance sum from a value to a whole cluster is taken from its prefix sums with a binary search, so
+     * the coefficient is computed in O(n log n) for a fixed number of clusters instead of O(n^2)
+     * @param values Value for each document
+     * @param labels Cluster for each document, or -1 if the document does not belong to any cluster
+     * @param clusterCount Number of clusters
+     * @return Silhouette Coefficient result, between -1 and 1. It is 0 when there are less than two
+     * non-empty clusters
      */
-    private List<Float> getClusterSSW()
+    public static float getSilhouette(float[] values, int[] labels, int clusterCount)
     {
-        List<Float> clustersSSW = new ArrayList<>();
+        int[] counts = getClusterCounts(labels, clusterCount);
+        if (getNonEmptyClusters(counts) < 2)
+        {
+            return 0;
+        }
         
-        for (int i = 0; i < clusters.size(); i++)
+        double[][] sorted = new double[clusterCount][];
+        for (int c = 0; c < clusterCount; c++)
+        {
+            sorted[c] = new double[counts[c]];
+        }
+        
+        int[] filled = new int[clusterCount];
+        for (int i = 0; i < values.length; i++)
+        {
+            if (labels[i] >= 0)
+            {
+                sorted[labels[i]][filled[labels[i]]++] = values[i];
+            }
+        }
+        
+        double[][] prefixSums = new double[clusterCount][];
+        for (int c = 0; c < clusterCount; c++)
         {
-            List<Integer> cluster = clusters.get(i);
+            Arrays.sort(sorted[c]);
             
-            float centroid = centroids.get(i);
-            float ssw = 0;
+            prefixSums[c] = new double[counts[c] + 1];
+            for (int j = 0; j < counts[c]; j++)
+            {
+                prefixSums[c][j + 1] = prefixSums[c][j] + sorted[c][j];
+            }
+        }
+        
+        double silhouetteSum = 0;
+        int docCount = 0;
+        
+        for (int i = 0; i < values.length; i++)
+        {
+            int label = labels[i];
+            if (label < 0)
+            {
+                continue;
+            }
             
-            for (Integer docIndex : cluster)
+            docCount++;
+            if (counts[label] == 1)
             {
-                if (docIndex < scoreDocs.length)
+                continue;
+            }
+            
+            double[] distanceSums = new double[clusterCount];
+            for (int c = 0; c < clusterCount; c++)
+            {
+                if (counts[c] > 0)
                 {
-                    ssw += Math.pow((scoreDocs[docIndex].score - centroid), 2);
+                    distanceSums[c] = getDistanceSum(values[i], sorted[c], prefixSums[c]);
                 }
             }
             
-            clustersSSW.add(ssw);
+            silhouetteSum += getDocumentSilhouette(distanceSums, counts, label);
+        }
+        
+        return (float) (silhouetteSum / docCount);
+    }
+    
+    /**
+     * Gets the exact Silhouette Coefficient for multi-dimensional vectors. The documents are evaluated in
+     * parallel, each one against all the other documents
+     * @param vectors Vector for each document
+     * @param labels Cluster for each document, or -1 if the document does not belong to any cluster
+     * @param clusterCount Number of clusters
+     * @return Silhouette Coefficient result, between -1 and 1. It is 0 when there are less than two
+     * non-empty clusters
+     */
+    public static float getSilhouette(float[][] vectors, int[] labels, int clusterCount)
+    {
+        int[] counts = getClusterCounts(labels, clusterCount);
+        if (getNonEmptyClusters(counts) < 2)
+        {
+            return 0;
         }
         
-        return clustersSSW;
+        int[] documents = IntStream.range(0, vectors.length).filter(i -> labels[i] >= 0).toArray();
+        
+        double silhouetteSum = Arrays.stream(documents).parallel()
+            .mapToDouble(i -> getVectorSilhouette(vectors, labels, counts, i))
+            .sum();
+        
+        return (float) (silhouetteSum / documents.length);
     }
     
+    /**
+     * Gets an approximate Silhouette Coefficient for multi-dimensional vectors. Only a random sample of the
+     * documents is evaluated, in parallel, against all the documents, so the cost is O(sampleSize * n)
+     * @param vectors Vector for each document
+     * @param labels Cluster for each document, or -1 if the document does not belong to any cluster
+     * @param clusterCount Number of clusters
+     * @param sampleSize Number of documents to evaluate. If it is bigger than the clustered documents the
+     * exact coefficient is returned
+     * @param seed Seed for the random sample, to get repeatable results
+     * @return Silhouette Coefficient estimation, between -1 and 1. It is 0 when there are less than two
+     * non-empty clusters
+     */
+    public static float getSampledSilhouette(float[][] vectors, int[] labels, int clusterCount, 
+        int sampleSize, long seed)
+    {
+        int[] counts = getClusterCounts(labels, clusterCount);
+        if (getNonEmptyClusters(counts) < 2)
+        {
+            return 0;
+        }
+        
+        int[] documents = IntStream.range(0, vectors.length).filter(i -> labels[i] >= 0).toArray();
+        if (sampleSize >= documents.length)
+        {
+            return getSilhouette(vectors, labels, clusterCount);
+        }
+        
+        Random random = new Random(seed);
+        for (int i = 0; i < sampleSize; i++)
+        {
+            int j = i + random.nextInt(documents.length - i);
+            int swap = documents[i];
+            documents[i] = documents[j];
+            documents[j] = swap;
+        }
+        
+        double silhouetteSum = Arrays.stream(documents, 0, sampleSize).parallel()
+            .mapToDouble(i -> getVectorSilhouette(vectors, labels, counts, i))
+            .sum();
+        
+        return (float) (silhouetteSum / sampleSize);
+    }
     
     /**
-     * Gets the centroid for each cluster
-     * @return List with centroids for each cluster
+     * Gets the Silhouette value for one document represented by a vector
+     * @param vectors Vector for each document
+     * @param labels Cluster for each document
+     * @param counts Number of documents in each cluster
+     * @param document Document index
+     * @return Silhouette value for the document
      */
-    private List<Float> getClusterCentroid()
+    private static double getVectorSilhouette(float[][] vectors, int[] labels, int[] counts, int document)
     {
-        List<Float> centroids = new ArrayList<>();
+        int label = labels[document];
+        if (counts[label] == 1)
+        {
+            return 0;
+        }
         
-        for (int i = 0; i < clusters.size(); i++)
+        double[] distanceSums = new double[counts.length];
+        float[] vector = vectors[document];
+        
+        for (int j = 0; j < vectors.length; j++)
         {
-            List<Integer> cluster = clusters.get(i);
-            
-            float scoreAcum = 0;
-            float docCount = 0;
-            
-            for (Integer docIndex : cluster)
+            if (labels[j] >= 0 && j != document)
             {
-                if (docIndex < scoreDocs.length)
+                double squares = 0;
+                for (int d = 0; d < vector.length; d++)
                 {
-                    docCount++;
-                    scoreAcum += scoreDocs[docIndex].score;
+                    double diff = vector[d] - vectors[j][d];
+                    squares += diff * diff;
                 }
+                
+                distanceSums[labels[j]] += Math.sqrt(squares);
             }
-            
-            float centroid = 0;
-            if (docCount != 0)
+        }
+        
+        return getDocumentSilhouette(distanceSums, counts, label);
+    }
+    
+    /**
+     * Gets the Silhouette value for one document from its distance sum to every cluster
+     * @param distanceSums Distance sum from the document to the documents of each cluster
+     * @param counts Number of documents in each cluster
+     * @param label Cluster of the document, with more than one document
+     * @return Silhouette value for the document
+     */
+    private static double getDocumentSilhouette(double[] distanceSums, int[] counts, int label)
+    {
+        double a = distanceSums[label] / (counts[label] - 1);
+        double b = Double.MAX_VALUE;
+        
+        for (int c = 0; c < counts.length; c++)
+        {
+            if (c != label && counts[c] > 0)
             {
-                float docsDiv = 1 / docCount;
-                centroid = docsDiv * scoreAcum;
+                b = Math.min(b, distanceSums[c] / counts[c]);
             }
-            
-            centroids.add(centroid);
         }
         
-        return centroids;
+        double max = Math.max(a, b);
+        return max == 0 ? 0 : (b - a) / max;
     }
     
     /**
-     * Sum the internal evaluation index result for each cluster
-     * @param clustersTest Test result for each cluster
-     * @return Sum of the clusters' test result
+     * Gets the distance sum from a value to all the values of a cluster
+     * @param value Document value
+     * @param sorted Sorted values of the cluster
+     * @param prefixSums Prefix sums of the sorted values, with one more position than the values
+     * @return Sum of the absolute differences between the value and the cluster values
      */
-    private float getClustersTestSum(List<Float> clustersTest)
+    private static double getDistanceSum(double value, double[] sorted, double[] prefixSums)
     {
-        float testSum = 0;
-        for (Float ssb : clustersTest)
+        int low = 0;
+        int high = sorted.length;
+        
+        while (low < high)
         {
-            testSum += ssb;
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
         }
         
-        return testSum;
+        double total = prefixSums[sorted.length];
+        double below = value * low - prefixSums[low];
+        double above = (total - prefixSums[low]) - value * (sorted.length - low);
+        
+        return below + above;
     }
     
     /**
-     * Gets the recovered documents average
-     * @return Document average
+     * Counts the documents in each cluster
+     * @param labels Cluster for each document, or -1 if the document does not belong to any cluster
+     * @param clusterCount Number of clusters
+     * @return Number of documents in each cluster
      */
-    private Float getDocumentsAvg()
+    private static int[] getClusterCounts(int[] labels, int clusterCount)
     {
-        float scoreAcum = 0;
-        float docCount = scoreDocs.length;
-        
-        for (ScoreDoc scoreDoc : scoreDocs)
+        int[] counts = new int[clusterCount];
+        for (int label : labels)
         {
-            scoreAcum += scoreDoc.score;
+            if (label >= 0)
+            {
+                counts[label]++;
+            }
         }
         
-        float docsAvg = 0;
-        if (docCount != 0)
+        return counts;
+    }
+    
+    /**
+     * Counts the clusters with at least one document
+     * @param counts Number of documents in each cluster
+     * @return Number of non-empty clusters
+     */
+    private static int getNonEmptyClusters(int[] counts)
+    {
+        int nonEmpty = 0;
+        for (int count : counts)
         {
-            float docsDiv = 1 / docCount;
-            docsAvg = docsDiv * scoreAcum;
+            if (count > 0)
+            {
+                nonEmpty++;
+            }
         }
         
-        return docsAvg;
+        return nonEmpty;
     }
     
     /**
@@ -208,4 +394,13 @@ public class InternalEvaluation
     {
         return centroids;
     }
+    
+    /**
+     * Gets the incremental statistics for the clusters
+     * @return Clusters statistics
+     */
+    public ClusterStatistics getStatistics()
+    {
+        return statistics;
+    }
 }
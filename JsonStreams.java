@@ -0,0 +1,117 @@
+package edu.co.usbcali.ir.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Utility to write JSON responses with a streaming generator straight to the response output stream,
+ * without building the JSON tree or the JSON string in memory. The output is compressed with gzip when
+ * the client accepts it
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class JsonStreams
+{
+    /**
+     * Size of the gzip buffer
+     */
+    private static final int GZIP_BUFFER_SIZE = 8192;
+    
+    /**
+     * Factory for the JSON generators, thread safe and reused by all the responses
+     */
+    private static final JsonFactory FACTORY = new JsonFactory()
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    
+    /**
+     * Content written to a JSON generator
+     */
+    public interface JsonContent
+    {
+        /**
+         * Writes the content to the generator
+         * @param generator JSON generator over the response output stream
+         * @throws IOException Throws an exception if the content cannot be written
+         */
+        void write(JsonGenerator generator) throws IOException;
+    }
+    
+    /**
+     * Creates a response that streams a JSON content, compressed if the client accepts gzip encoding
+     * @param content JSON content
+     * @param acceptEncoding Accept-Encoding header of the request, can be null
+     * @return Response builder with the streamed content and the encoding headers
+     */
+    public static Response.ResponseBuilder stream(JsonContent content, String acceptEncoding)
+    {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        
+        StreamingOutput output = outputStream ->
+        {
+            OutputStream stream = gzip ? new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE) : outputStream;
+            
+            try (JsonGenerator generator = FACTORY.createGenerator(stream))
+            {
+                content.write(generator);
+            }
+            
+            if (gzip)
+            {
+                ((GZIPOutputStream) stream).finish();
+            }
+        };
+        
+        Response.ResponseBuilder builder = Response.status(200).entity(output)
+            .type(MediaType.APPLICATION_JSON_TYPE).header("Vary", "Accept-Encoding");
+        
+        if (gzip)
+        {
+            builder.header("Content-Encoding", "gzip");
+        }
+        
+        return builder;
+    }
+    
+    /**
+     * Checks if an Accept-Encoding header accepts the gzip encoding
+     * @param acceptEncoding Accept-Encoding header, can be null
+     * @return True if gzip is accepted with a quality bigger than 0
+     */
+    public static boolean acceptsGzip(String acceptEncoding)
+    {
+        if (acceptEncoding == null)
+        {
+            return false;
+        }
+        
+        for (String encoding : acceptEncoding.split(","))
+        {
+            String[] parts = encoding.trim().split(";");
+            String name = parts[0].trim();
+            
+            if (name.equalsIgnoreCase("gzip") || name.equals("*"))
+            {
+                for (int i = 1; i < parts.length; i++)
+                {
+                    String parameter = parts[i].trim().replace(" ", "");
+                    if (parameter.equals("q=0") || parameter.matches("q=0\\.0*"))
+                    {
+                        return false;
+                    }
+                }
+                
+                return true;
+            }
+        }
+        
+        return false;
+    }
+}
@@ -0,0 +1,161 @@
+package edu.co.usbcali.ir.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram. Each power of two is
+ * split in 32 linear sub-buckets, so any recorded value is reported with an error under 3.2%, using a fixed
+ * amount of memory and without locks when several threads record at the same time
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class LatencyHistogram
+{
+    /**
+     * Number of bits for the linear sub-buckets of each power of two
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    
+    /**
+     * Number of linear sub-buckets of each power of two
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    /**
+     * Number of buckets to cover all the positive long values
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    /**
+     * Number of recorded values for each bucket
+     */
+    private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    
+    /**
+     * Number of recorded values
+     */
+    private AtomicLong totalCount = new AtomicLong();
+    
+    /**
+     * Sum of the recorded values
+     */
+    private AtomicLong totalSum = new AtomicLong();
+    
+    /**
+     * Max recorded value
+     */
+    private AtomicLong max = new AtomicLong();
+    
+    /**
+     * Records a value
+     * @param value Value to record, usually nanoseconds. Negative values are recorded as 0
+     */
+    public void record(long value)
+    {
+        value = Math.max(0, value);
+        
+        counts.incrementAndGet(getBucket(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+    
+    /**
+     * Gets the value at a percentile of the recorded values
+     * @param percentile Percentile between 0 and 100
+     * @return Highest value of the bucket that contains the percentile, never bigger than the max, or 0 if
+     * there are no recorded values
+     */
+    public long getPercentile(double percentile)
+    {
+        long count = totalCount.get();
+        if (count == 0)
+        {
+            return 0;
+        }
+        
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long accumulated = 0;
+        
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            accumulated += counts.get(i);
+            if (accumulated >= rank)
+            {
+                return Math.min(getLowerBound(i + 1) - 1, max.get());
+            }
+        }
+        
+        return max.get();
+    }
+    
+    /**
+     * Gets the number of recorded values
+     * @return Recorded values
+     */
+    public long getCount()
+    {
+        return totalCount.get();
+    }
+    
+    /**
+     * Gets the mean of the recorded values
+     * @return Mean value, or 0 if there are no recorded values
+     */
+    public double getMean()
+    {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalSum.get() / count;
+    }
+    
+    /**
+     * Gets the max recorded value
+     * @return Max value
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+    
+    /**
+     * Gets the bucket for a value
+     * @param value Positive value
+     * @return Bucket index
+     */
+    private static int getBucket(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+    
+    /**
+     * Gets the lowest value of a bucket
+     * @param bucket Bucket index
+     * @return Lowest value, or the max long value for the bucket after the last one
+     */
+    private static long getLowerBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        
+        if (bucket >= BUCKETS)
+        {
+            return Long.MAX_VALUE;
+        }
+        
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+}
@@ -0,0 +1,244 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+
+import edu.co.usbcali.ir.constants.LuceneConstants;
+
+/**
+ * Groups the near-duplicate news of an index using Locality Sensitive Hashing (LSH) over the MinHash
+ * signatures stored by the {@link Indexer}. The groups are computed once per index version, after each index
+ * creation or replicated commit and before the shared searcher is reopened, so folding the duplicates of a
+ * search result takes constant time per hit and the searches do not wait for the groups
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class LshIndex
+{
+    /**
+     * Number of bands in which the signatures are split
+     */
+    private static final int BANDS = 16;
+    
+    /**
+     * Number of signature positions for each band
+     */
+    private static final int ROWS = MinHash.SIGNATURE_LENGTH / BANDS;
+    
+    /**
+     * Min estimated Jaccard similarity to consider two news as near-duplicates
+     */
+    private static final float SIMILARITY_THRESHOLD = 0.8f;
+    
+    /**
+     * LSH indexes for each index directory, rebuilt when the index version changes
+     */
+    private static final Map<String, LshIndex> INDEXES = new ConcurrentHashMap<>();
+    
+    /**
+     * Index version used to build the groups
+     */
+    private long version;
+    
+    /**
+     * Near-duplicates group for each document
+     */
+    private int[] groups;
+    
+    /**
+     * Builds the near-duplicates groups for all the documents in the index
+     * @param reader Index reader
+     * @throws IOException Throws an exception when there is a problem reading the stored signatures
+     */
+    private LshIndex(DirectoryReader reader) throws IOException
+    {
+        version = reader.getVersion();
+        
+        int[][] signatures = getSignatures(reader);
+        groups = new int[signatures.length];
+        for (int i = 0; i < groups.length; i++)
+        {
+            groups[i] = i;
+        }
+        
+        for (int band = 0; band < BANDS; band++)
+        {
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            
+            for (int doc = 0; doc < signatures.length; doc++)
+            {
+                if (signatures[doc] == null)
+                {
+                    continue;
+                }
+                
+                List<Integer> bucket = buckets.computeIfAbsent(getBandHash(signatures[doc], band),
+                    key -> new ArrayList<>(1));
+                
+                for (Integer candidate : bucket)
+                {
+                    if (getGroup(candidate) != getGroup(doc)
+                            && MinHash.getSimilarity(signatures[candidate], signatures[doc]) 
+                            >= SIMILARITY_THRESHOLD)
+                    {
+                        union(candidate, doc);
+                    }
+                }
+                
+                bucket.add(doc);
+            }
+        }
+        
+        for (int i = 0; i < groups.length; i++)
+        {
+            groups[i] = getGroup(i);
+        }
+    }
+    
+    /**
+     * Builds the LSH index from the last commit of an index directory and replaces the previous one. It is
+     * called before the shared searcher is reopened with the commit, so the searches find it already built
+     * @param indexDirPath Path from the index files
+     * @throws IOException Throws an exception when there is a problem reading the stored signatures
+     */
+    public static void build(String indexDirPath) throws IOException
+    {
+        try (Directory indexDir = FSDirectory.open(Paths.get(indexDirPath));
+            DirectoryReader reader = DirectoryReader.open(indexDir))
+        {
+            INDEXES.put(indexDirPath, new LshIndex(reader));
+        }
+    }
+    
+    /**
+     * Gets the LSH index for an index directory. If it was not built for the reader version, as in the first
+     * search over an index created before the service started, it is built for the reader by the calling
+     * thread, without blocking the searches over other versions
+     * @param indexDirPath Path from the index files
+     * @param reader Index reader opened over the index directory
+     * @return LSH index for the reader version
+     * @throws IOException Throws an exception when there is a problem reading the stored signatures
+     */
+    public static LshIndex getInstance(String indexDirPath, DirectoryReader reader) throws IOException
+    {
+        LshIndex index = INDEXES.get(indexDirPath);
+        if (index != null && index.version == reader.getVersion())
+        {
+            return index;
+        }
+        
+        index = new LshIndex(reader);
+        INDEXES.put(indexDirPath, index);
+        
+        return index;
+    }
+    
+    /**
+     * Folds the near-duplicates of the recovered documents, keeping only the best scored document of each
+     * group
+     * @param scoreDocs Recovered documents sorted by score
+     * @return Recovered documents without near-duplicates
+     */
+    public ScoreDoc[] collapse(ScoreDoc[] scoreDocs)
+    {
+        Set<Integer> seenGroups = new HashSet<>();
+        List<ScoreDoc> collapsed = new ArrayList<>(scoreDocs.length);
+        
+        for (ScoreDoc scoreDoc : scoreDocs)
+        {
+            int group = scoreDoc.doc < groups.length ? groups[scoreDoc.doc] : scoreDoc.doc;
+            if (seenGroups.add(group))
+            {
+                collapsed.add(scoreDoc);
+            }
+        }
+        
+        return collapsed.toArray(new ScoreDoc[collapsed.size()]);
+    }
+    
+    /**
+     * Reads the stored MinHash signature for each live document of the index
+     * @param reader Index reader
+     * @return Signature for each document, or null if the document is deleted or has no signature
+     * @throws IOException Throws an exception when there is a problem reading the stored fields
+     */
+    private static int[][] getSignatures(DirectoryReader reader) throws IOException
+    {
+        int[][] signatures = new int[reader.maxDoc()][];
+        Bits liveDocs = MultiFields.getLiveDocs(reader);
+        Set<String> fields = Collections.singleton(LuceneConstants.MIN_HASH);
+        
+        for (int doc = 0; doc < signatures.length; doc++)
+        {
+            if (liveDocs == null || liveDocs.get(doc))
+            {
+                Document document = reader.document(doc, fields);
+                signatures[doc] = MinHash.fromBytes(document.getBinaryValue(LuceneConstants.MIN_HASH));
+            }
+        }
+        
+        return signatures;
+    }
+    
+    /**
+     * Gets the hash for one band of a signature
+     * @param signature MinHash signature
+     * @param band Band index
+     * @return Band hash
+     */
+    private static long getBandHash(int[] signature, int band)
+    {
+        long hash = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++)
+        {
+            hash = MinHash.mix(hash * 31 + signature[i]);
+        }
+        
+        return hash;
+    }
+    
+    /**
+     * Gets the group of a document, compressing the path to the group root
+     * @param doc Document id
+     * @return Group id
+     */
+    private int getGroup(int doc)
+    {
+        while (groups[doc] != doc)
+        {
+            groups[doc] = groups[groups[doc]];
+            doc = groups[doc];
+        }
+        
+        return doc;
+    }
+    
+    /**
+     * Joins the groups of two documents
+     * @param first First document id
+     * @param second Second document id
+     */
+    private void union(int first, int second)
+    {
+        int firstGroup = getGroup(first);
+        int secondGroup = getGroup(second);
+        
+        groups[Math.max(firstGroup, secondGroup)] = Math.min(firstGroup, secondGroup);
+    }
+}
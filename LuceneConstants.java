@@ -21,4 +21,30 @@ public class LuceneConstants
      * Document field reference to file path
      */
     public static final String FILE_PATH = "filepath";
+    
+    /**
+     * Document field reference to the content MinHash signature
+     */
+    public static final String MIN_HASH = "minhash";
+    
+    /**
+     * Document field reference to the news title
+     */
+    public static final String TITLE = "title";
+    
+    /**
+     * Document field reference to the news date, indexed as a point and doc values for range filters and
+     * sorting
+     */
+    public static final String DATE = "date";
+    
+    /**
+     * Document field reference to the news topics, indexed as keywords and doc values
+     */
+    public static final String TOPICS = "topics";
+    
+    /**
+     * Document field reference to the news places, indexed as keywords and doc values
+     */
+    public static final String PLACES = "places";
 }
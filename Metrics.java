@@ -0,0 +1,227 @@
+package edu.co.usbcali.ir.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Registry with the latency histograms of the request phases and endpoints, and the error count of each
+ * endpoint. The phases are measured in nanoseconds with {@link System#nanoTime()}
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class Metrics
+{
+    /**
+     * Query parsing phase
+     */
+    public static final String PARSE = "parse";
+    
+    /**
+     * Index search phase
+     */
+    public static final String SEARCH = "search";
+    
+    /**
+     * Stored fields loading phase
+     */
+    public static final String FETCH = "fetch";
+    
+    /**
+     * Snippet highlighting phase
+     */
+    public static final String HIGHLIGHT = "highlight";
+    
+    /**
+     * Covering Array clustering phase
+     */
+    public static final String CLUSTER = "cluster";
+    
+    /**
+     * Local search refinement phase
+     */
+    public static final String REFINE = "refine";
+    
+    /**
+     * Internal evaluation phase
+     */
+    public static final String EVALUATE = "evaluate";
+    
+    /**
+     * Silhouette Coefficient phase, part of the internal evaluation
+     */
+    public static final String SILHOUETTE = "silhouette";
+    
+    /**
+     * JSON serialization phase
+     */
+    public static final String SERIALIZE = "serialize";
+    
+    /**
+     * Latency histograms for each phase
+     */
+    private static final Map<String, LatencyHistogram> PHASES = new ConcurrentHashMap<>();
+    
+    /**
+     * Latency histograms for each endpoint
+     */
+    private static final Map<String, LatencyHistogram> ENDPOINTS = new ConcurrentHashMap<>();
+    
+    /**
+     * Error count for each endpoint
+     */
+    private static final Map<String, AtomicLong> ERRORS = new ConcurrentHashMap<>();
+    
+    /**
+     * Time when the metrics started, to compute the throughput
+     */
+    private static final long START_TIME = System.nanoTime();
+    
+    /**
+     * Records the elapsed time of a phase, also adding it to the profile of the search running in the
+     * calling thread
+     * @param phase Phase name
+     * @param startTime Start time of the phase from {@link System#nanoTime()}
+     */
+    public static void recordPhase(String phase, long startTime)
+    {
+        long elapsed = System.nanoTime() - startTime;
+        PHASES.computeIfAbsent(phase, key -> new LatencyHistogram()).record(elapsed);
+        
+        QueryProfile profile = QueryProfile.current();
+        if (profile != null)
+        {
+            profile.addPhase(phase, elapsed);
+        }
+    }
+    
+    /**
+     * Records the elapsed time of a request to an endpoint
+     * @param endpoint Endpoint name
+     * @param startTime Start time of the request from {@link System#nanoTime()}
+     */
+    public static void recordRequest(String endpoint, long startTime)
+    {
+        ENDPOINTS.computeIfAbsent(endpoint, key -> new LatencyHistogram()).record(System.nanoTime() - startTime);
+    }
+    
+    /**
+     * Counts a failed request to an endpoint
+     * @param endpoint Endpoint name
+     */
+    public static void recordError(String endpoint)
+    {
+        ERRORS.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+    }
+    
+    /**
+     * Writes the metrics as a JSON object with the phases and the endpoints. The latencies are in
+     * milliseconds and the throughput in requests per second since the start
+     * @param generator JSON generator
+     * @throws IOException Throws an exception if the metrics cannot be written
+     */
+    public static void writeJson(JsonGenerator generator) throws IOException
+    {
+        double uptime = (System.nanoTime() - START_TIME) / 1e9;
+        
+        generator.writeStartObject();
+        generator.writeNumberField("uptime", uptime);
+        
+        generator.writeObjectFieldStart("phases");
+        for (Map.Entry<String, LatencyHistogram> phase : new TreeMap<>(PHASES).entrySet())
+        {
+            generator.writeFieldName(phase.getKey());
+            writeHistogram(generator, phase.getValue());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        
+        generator.writeObjectFieldStart("endpoints");
+        for (Map.Entry<String, LatencyHistogram> endpoint : new TreeMap<>(ENDPOINTS).entrySet())
+        {
+            generator.writeFieldName(endpoint.getKey());
+            writeHistogram(generator, endpoint.getValue());
+            generator.writeNumberField("throughput", endpoint.getValue().getCount() / uptime);
+            generator.writeNumberField("errors", getErrors(endpoint.getKey()));
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        
+        generator.writeEndObject();
+    }
+    
+    /**
+     * Gets the metrics as text, one line for each phase and endpoint. The latencies are in milliseconds and
+     * the throughput in requests per second since the start
+     * @return Metrics text
+     */
+    public static String getText()
+    {
+        double uptime = (System.nanoTime() - START_TIME) / 1e9;
+        StringBuilder text = new StringBuilder();
+        
+        text.append(String.format("uptime %.1f s%n", uptime));
+        
+        for (Map.Entry<String, LatencyHistogram> phase : new TreeMap<>(PHASES).entrySet())
+        {
+            text.append("phase ").append(phase.getKey()).append(' ');
+            appendHistogram(text, phase.getValue());
+            text.append(String.format("%n"));
+        }
+        
+        for (Map.Entry<String, LatencyHistogram> endpoint : new TreeMap<>(ENDPOINTS).entrySet())
+        {
+            text.append("endpoint ").append(endpoint.getKey()).append(' ');
+            appendHistogram(text, endpoint.getValue());
+            text.append(String.format(" throughput=%.2f/s errors=%d%n", 
+                endpoint.getValue().getCount() / uptime, getErrors(endpoint.getKey())));
+        }
+        
+        return text.toString();
+    }
+    
+    /**
+     * Starts a JSON object with the fields of a histogram, which is ended by the caller after adding its
+     * own fields
+     * @param generator JSON generator
+     * @param histogram Latency histogram
+     * @throws IOException Throws an exception if the histogram cannot be written
+     */
+    private static void writeHistogram(JsonGenerator generator, LatencyHistogram histogram) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeNumberField("count", histogram.getCount());
+        generator.writeNumberField("mean", histogram.getMean() / 1e6);
+        generator.writeNumberField("p50", histogram.getPercentile(50) / 1e6);
+        generator.writeNumberField("p95", histogram.getPercentile(95) / 1e6);
+        generator.writeNumberField("p99", histogram.getPercentile(99) / 1e6);
+        generator.writeNumberField("max", histogram.getMax() / 1e6);
+    }
+    
+    /**
+     * Appends the fields of a histogram to a text line
+     * @param text Metrics text
+     * @param histogram Latency histogram
+     */
+    private static void appendHistogram(StringBuilder text, LatencyHistogram histogram)
+    {
+        text.append(String.format("count=%d mean=%.3f p50=%.3f p95=%.3f p99=%.3f max=%.3f", 
+            histogram.getCount(), histogram.getMean() / 1e6, histogram.getPercentile(50) / 1e6,
+            histogram.getPercentile(95) / 1e6, histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6));
+    }
+    
+    /**
+     * Gets the error count of an endpoint
+     * @param endpoint Endpoint name
+     * @return Error count
+     */
+    private static long getErrors(String endpoint)
+    {
+        AtomicLong errors = ERRORS.get(endpoint);
+        return errors == null ? 0 : errors.get();
+    }
+}
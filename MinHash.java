@@ -0,0 +1,152 @@
+package edu.co.usbcali.ir.processes;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Generates the MinHash signature of a news content. The signature is built from the word shingles of the
+ * content, and the fraction of equal positions between two signatures estimates the Jaccard similarity of
+ * their contents
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class MinHash
+{
+    /**
+     * Number of hash functions, which is the signature length
+     */
+    public static final int SIGNATURE_LENGTH = 64;
+    
+    /**
+     * Number of words for each shingle
+     */
+    private static final int SHINGLE_SIZE = 3;
+    
+    /**
+     * Seeds for the hash functions. They are fixed, so the signatures are comparable between index runs
+     */
+    private static final long[] SEEDS = new long[SIGNATURE_LENGTH];
+    
+    static
+    {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++)
+        {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+    
+    /**
+     * Gets the MinHash signature for a news content
+     * @param content News content
+     * @return Signature with the min hash for each hash function
+     */
+    public static int[] getSignature(String content)
+    {
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        
+        String[] words = content.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+        int start = words.length > 0 && words[0].isEmpty() ? 1 : 0;
+        int shingles = Math.max(1, words.length - start - SHINGLE_SIZE + 1);
+        
+        for (int i = 0; i < shingles; i++)
+        {
+            long shingleHash = 0;
+            for (int j = start + i; j < Math.min(words.length, start + i + SHINGLE_SIZE); j++)
+            {
+                shingleHash = shingleHash * 31 + words[j].hashCode();
+            }
+            
+            for (int h = 0; h < SIGNATURE_LENGTH; h++)
+            {
+                int hash = (int) mix(shingleHash ^ SEEDS[h]);
+                if (hash < signature[h])
+                {
+                    signature[h] = hash;
+                }
+            }
+        }
+        
+        return signature;
+    }
+    
+    /**
+     * Estimates the Jaccard similarity between the contents of two signatures
+     * @param first First signature
+     * @param second Second signature
+     * @return Fraction of equal positions in both signatures
+     */
+    public static float getSimilarity(int[] first, int[] second)
+    {
+        int equals = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++)
+        {
+            if (first[i] == second[i])
+            {
+                equals++;
+            }
+        }
+        
+        return (float) equals / SIGNATURE_LENGTH;
+    }
+    
+    /**
+     * Encodes a signature to store it in the index
+     * @param signature MinHash signature
+     * @return Signature bytes
+     */
+    public static BytesRef toBytes(int[] signature)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(SIGNATURE_LENGTH * Integer.BYTES);
+        for (int hash : signature)
+        {
+            buffer.putInt(hash);
+        }
+        
+        return new BytesRef(buffer.array());
+    }
+    
+    /**
+     * Decodes a signature stored in the index
+     * @param bytes Signature bytes
+     * @return MinHash signature, or null if the bytes do not have a valid signature
+     */
+    public static int[] fromBytes(BytesRef bytes)
+    {
+        if (bytes == null || bytes.length != SIGNATURE_LENGTH * Integer.BYTES)
+        {
+            return null;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.bytes, bytes.offset, bytes.length);
+        int[] signature = new int[SIGNATURE_LENGTH];
+        
+        for (int i = 0; i < SIGNATURE_LENGTH; i++)
+        {
+            signature[i] = buffer.getInt();
+        }
+        
+        return signature;
+    }
+    
+    /**
+     * Mixes the bits of a value to get a well distributed hash (MurmurHash3 finalizer)
+     * @param value Value to mix
+     * @return Mixed value
+     */
+    static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        
+        return value;
+    }
+}
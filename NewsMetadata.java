@@ -0,0 +1,251 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Structured fields of a Reuters news: date, title, topics and places. The SGM parser writes them in a JSON
+ * file next to the TXT news, with the same name and the json extension, because the TXT has only the date,
+ * title and body. The news extracted without the JSON file get their date and title from the TXT
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class NewsMetadata
+{
+    /**
+     * Date of the Reuters news, like 26-FEB-1987 15:01:01.79. The hundredths of second are ignored
+     */
+    private static final Pattern DATE_PATTERN = Pattern.compile(
+        "(\\d{1,2}-[A-Za-z]{3}-\\d{4}\\s+\\d{1,2}:\\d{2}:\\d{2})");
+    
+    /**
+     * Formatter of the Reuters dates, in UTC
+     */
+    private static final DateTimeFormatter DATE_FORMATTER = new DateTimeFormatterBuilder()
+        .parseCaseInsensitive().appendPattern("d-MMM-yyyy H:mm:ss").toFormatter(Locale.ENGLISH);
+    
+    /**
+     * Value of the date when the news has no valid date
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+    
+    /**
+     * News title, or an empty string if the news has no title
+     */
+    private String title;
+    
+    /**
+     * News date in milliseconds, or NO_DATE if the news has no valid date
+     */
+    private long date;
+    
+    /**
+     * News topics, like earn or acq
+     */
+    private List<String> topics;
+    
+    /**
+     * News places, like usa or uk
+     */
+    private List<String> places;
+    
+    /**
+     * Initializes the structured fields of a news
+     * @param title News title, or an empty string if the news has no title
+     * @param date News date in milliseconds, or NO_DATE if the news has no valid date
+     * @param topics News topics
+     * @param places News places
+     */
+    public NewsMetadata(String title, long date, List<String> topics, List<String> places)
+    {
+        this.title = title;
+        this.date = date;
+        this.topics = topics;
+        this.places = places;
+    }
+    
+    /**
+     * Reads the structured fields of a TXT news from its JSON file, or gets the date and title from the TXT
+     * if the news has no JSON file
+     * @param file TXT file with a news
+     * @return Structured fields of the news
+     * @throws IOException Throws an exception if the files cannot be read
+     */
+    public static NewsMetadata read(File file) throws IOException
+    {
+        File jsonFile = getJsonFile(file);
+        if (!jsonFile.exists())
+        {
+            return new NewsMetadata(Indexer.getTitle(file), getDate(file), Collections.emptyList(),
+                Collections.emptyList());
+        }
+        
+        try (Reader reader = Files.newBufferedReader(jsonFile.toPath(), StandardCharsets.UTF_8))
+        {
+            JSONObject json = (JSONObject) new JSONParser().parse(reader);
+            Object title = json.get("title");
+            Object date = json.get("date");
+            
+            return new NewsMetadata(title != null ? (String) title : "",
+                date != null ? ((Number) date).longValue() : NO_DATE, getList(json, "topics"),
+                getList(json, "places"));
+        }
+        catch (ParseException | ClassCastException ex)
+        {
+            throw new IOException("The news fields cannot be read from " + jsonFile, ex);
+        }
+    }
+    
+    /**
+     * Writes the structured fields of a TXT news in its JSON file
+     * @param file TXT file with a news
+     * @throws IOException Throws an exception if the JSON file cannot be written
+     */
+    @SuppressWarnings("unchecked")
+    public void write(File file) throws IOException
+    {
+        JSONObject json = new JSONObject();
+        json.put("title", title);
+        if (date != NO_DATE)
+        {
+            json.put("date", date);
+        }
+        
+        JSONArray topicsJson = new JSONArray();
+        topicsJson.addAll(topics);
+        json.put("topics", topicsJson);
+        
+        JSONArray placesJson = new JSONArray();
+        placesJson.addAll(places);
+        json.put("places", placesJson);
+        
+        Files.write(getJsonFile(file).toPath(), json.toJSONString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Gets the JSON file of a TXT news
+     * @param file TXT file with a news
+     * @return JSON file with the structured fields of the news
+     */
+    public static File getJsonFile(File file)
+    {
+        return new File(file.getParentFile(), file.getName().replaceAll("\\.txt$", "") + ".json");
+    }
+    
+    /**
+     * Parses a Reuters date
+     * @param text Text with a Reuters date
+     * @return Date in milliseconds, or NO_DATE if the text has no valid date
+     */
+    public static long parseDate(String text)
+    {
+        Matcher matcher = DATE_PATTERN.matcher(text);
+        if (!matcher.find())
+        {
+            return NO_DATE;
+        }
+        
+        try
+        {
+            return LocalDateTime.parse(matcher.group(1).replaceAll("\\s+", " "), DATE_FORMATTER)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        catch (DateTimeParseException ex)
+        {
+            return NO_DATE;
+        }
+    }
+    
+    /**
+     * Gets the date of a TXT news from its first line
+     * @param file TXT file with a news
+     * @return Date in milliseconds, or NO_DATE if the news has no valid date
+     * @throws IOException Throws an exception if the file cannot be read
+     */
+    private static long getDate(File file) throws IOException
+    {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+        {
+            String line = reader.readLine();
+            return line != null ? parseDate(line) : NO_DATE;
+        }
+    }
+    
+    /**
+     * Gets a list of strings from a JSON object
+     * @param json JSON object
+     * @param key Key of the list
+     * @return List of strings, empty if the key is missing
+     */
+    private static List<String> getList(JSONObject json, String key)
+    {
+        List<String> values = new ArrayList<>();
+        Object array = json.get(key);
+        if (array instanceof JSONArray)
+        {
+            for (Object value : (JSONArray) array)
+            {
+                values.add(String.valueOf(value));
+            }
+        }
+        
+        return values;
+    }
+    
+    /**
+     * Gets the news title
+     * @return News title, or an empty string if the news has no title
+     */
+    public String getTitle()
+    {
+        return title;
+    }
+    
+    /**
+     * Gets the news date
+     * @return Date in milliseconds, or NO_DATE if the news has no valid date
+     */
+    public long getDate()
+    {
+        return date;
+    }
+    
+    /**
+     * Gets the news topics
+     * @return News topics
+     */
+    public List<String> getTopics()
+    {
+        return topics;
+    }
+    
+    /**
+     * Gets the news places
+     * @return News places
+     */
+    public List<String> getPlaces()
+    {
+        return places;
+    }
+}
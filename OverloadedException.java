@@ -0,0 +1,56 @@
+package edu.co.usbcali.ir.rest;
+
+/**
+ * Signals that a request was rejected because the service is overloaded
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class OverloadedException extends Exception
+{
+    /**
+     * Serial version for the exception
+     */
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * HTTP status for the rejected request: 429 when the endpoint limit is reached and 503 when the search
+     * queue is full
+     */
+    private int status;
+    
+    /**
+     * Seconds that the client should wait before retrying the request
+     */
+    private int retryAfter;
+    
+    /**
+     * Initializes the exception
+     * @param message Rejection reason
+     * @param status HTTP status for the rejected request
+     * @param retryAfter Seconds that the client should wait before retrying the request
+     */
+    public OverloadedException(String message, int status, int retryAfter)
+    {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+    
+    /**
+     * Gets the HTTP status for the rejected request
+     * @return HTTP status
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+    
+    /**
+     * Gets the seconds that the client should wait before retrying the request
+     * @return Seconds to wait
+     */
+    public int getRetryAfter()
+    {
+        return retryAfter;
+    }
+}
@@ -32,4 +32,19 @@ public class PathsConstants
      */
     public static String COVERING_ARRAY_FILE = "/edu/co/usbcali/ir/files/CoveringArray";
     
+    /**
+     * System property with the Reuters SGM files path, used instead of the path in the web application
+     */
+    public static final String SGM_PATH_PROPERTY = "ir.sgm.path";
+    
+    /**
+     * System property with the news TXT files path, used instead of the path in the web application
+     */
+    public static final String DATA_PATH_PROPERTY = "ir.data.path";
+    
+    /**
+     * System property with the index files path, used instead of the path in the web application
+     */
+    public static final String INDEX_PATH_PROPERTY = "ir.index.path";
+    
 }
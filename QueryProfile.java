@@ -0,0 +1,241 @@
+package edu.co.usbcali.ir.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+/**
+ * Execution profile of one search: the parsed query, hit count, segment count, clustering rows evaluated and
+ * the elapsed time of each phase. The profile is bound to the thread running the search, so the phases
+ * recorded in {@link Metrics} from that thread are also added to the profile
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class QueryProfile
+{
+    /**
+     * Profile of the search running in each thread
+     */
+    private static final ThreadLocal<QueryProfile> CURRENT = new ThreadLocal<>();
+    
+    /**
+     * Query string given by the client
+     */
+    private String searchQuery;
+    
+    /**
+     * Parsed query
+     */
+    private Query query;
+    
+    /**
+     * Total number of matched documents
+     */
+    private long hits;
+    
+    /**
+     * Number of index segments searched
+     */
+    private int segments;
+    
+    /**
+     * Number of Covering Array rows evaluated in the clustering
+     */
+    private int clusteringRows;
+    
+    /**
+     * Elapsed nanoseconds for each phase in the order they were recorded
+     */
+    private Map<String, Long> phases = new LinkedHashMap<>();
+    
+    /**
+     * Start time of the search from {@link System#nanoTime()}
+     */
+    private long startTime = System.nanoTime();
+    
+    /**
+     * Elapsed nanoseconds of the whole search, set when the profile ends
+     */
+    private long elapsedTime;
+    
+    /**
+     * Index reader kept open to explain the top hits after the search, or null if they are not explained
+     */
+    private IndexReader reader;
+    
+    /**
+     * Top hits to explain
+     */
+    private ScoreDoc[] topHits = new ScoreDoc[0];
+    
+    /**
+     * Initializes the profile of a search
+     * @param searchQuery Query string given by the client
+     */
+    private QueryProfile(String searchQuery)
+    {
+        this.searchQuery = searchQuery;
+    }
+    
+    /**
+     * Starts the profile of a search in the calling thread
+     * @param searchQuery Query string given by the client
+     * @return Profile of the search
+     */
+    public static QueryProfile start(String searchQuery)
+    {
+        QueryProfile profile = new QueryProfile(searchQuery);
+        CURRENT.set(profile);
+        
+        return profile;
+    }
+    
+    /**
+     * Gets the profile of the search running in the calling thread
+     * @return Current profile, or null if no search is profiled in this thread
+     */
+    public static QueryProfile current()
+    {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Ends the profile, unbinding it from the calling thread
+     */
+    public void end()
+    {
+        elapsedTime = System.nanoTime() - startTime;
+        CURRENT.remove();
+    }
+    
+    /**
+     * Adds the elapsed time of a phase. The time is added to the previous one if the phase is repeated
+     * @param phase Phase name
+     * @param elapsed Elapsed nanoseconds
+     */
+    public void addPhase(String phase, long elapsed)
+    {
+        phases.merge(phase, elapsed, Long::sum);
+    }
+    
+    /**
+     * Sets the result of the search in the index, keeping the top hits to explain
+     * @param query Parsed query
+     * @param topDocs Recovered documents
+     * @param segments Number of index segments searched
+     */
+    public void setSearch(Query query, TopDocs topDocs, int segments)
+    {
+        this.query = query;
+        this.segments = segments;
+        
+        hits = topDocs.totalHits;
+        topHits = Arrays.copyOf(topDocs.scoreDocs,
+            Math.min(topDocs.scoreDocs.length, SlowQueryLog.getExplainHits()));
+    }
+    
+    /**
+     * Sets the number of Covering Array rows evaluated in the clustering
+     * @param clusteringRows Number of rows
+     */
+    public void setClusteringRows(int clusteringRows)
+    {
+        this.clusteringRows = clusteringRows;
+    }
+    
+    /**
+     * Keeps the index reader open to explain the top hits when the profile is written. The reader reference
+     * is released after the explanation. Nothing is kept if the search failed before the query was parsed
+     * or if the reader is already closed
+     * @param reader Index reader used in the search
+     */
+    public void retain(IndexReader reader)
+    {
+        if (query != null && topHits.length > 0 && reader.tryIncRef())
+        {
+            this.reader = reader;
+        }
+    }
+    
+    /**
+     * Gets the elapsed time of the whole search
+     * @return Elapsed nanoseconds, or 0 if the profile has not ended
+     */
+    public long getElapsedTime()
+    {
+        return elapsedTime;
+    }
+    
+    /**
+     * Gets the profile as text, explaining the retained top hits. This method is called from the slow
+     * query log thread, so the explanation does not delay the search response
+     * @return Profile text
+     */
+    public String getText()
+    {
+        StringBuilder text = new StringBuilder();
+        
+        text.append(String.format("elapsed=%.3fms query=\"%s\" parsed=\"%s\" hits=%d segments=%d rows=%d%n",
+            elapsedTime / 1e6, searchQuery, query, hits, segments, clusteringRows));
+        
+        for (Map.Entry<String, Long> phase : phases.entrySet())
+        {
+            text.append(String.format("  %s=%.3fms%n", phase.getKey(), phase.getValue() / 1e6));
+        }
+        
+        if (reader != null)
+        {
+            try
+            {
+                IndexSearcher indexSearcher = new IndexSearcher(reader);
+                
+                for (ScoreDoc hit : topHits)
+                {
+                    Explanation explanation = indexSearcher.explain(query, hit.doc);
+                    text.append("  explain doc=").append(hit.doc).append(String.format("%n"));
+                    text.append(explanation.toString().replaceAll("(?m)^", "    "));
+                }
+            }
+            catch (IOException ex)
+            {
+                text.append("  explain failed: ").append(ex.getMessage()).append(String.format("%n"));
+            }
+            finally
+            {
+                release();
+            }
+        }
+        
+        return text.toString();
+    }
+    
+    /**
+     * Releases the retained index reader
+     */
+    public void release()
+    {
+        if (reader == null)
+        {
+            return;
+        }
+        
+        try
+        {
+            reader.decRef();
+        }
+        catch (IOException ex)
+        {
+            // The reader is closed by its last reference, so the profile has nothing else to release
+        }
+        
+        reader = null;
+    }
+}
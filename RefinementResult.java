@@ -0,0 +1,177 @@
+package edu.co.usbcali.ir.processes;
+
+/**
+ * Summarizes a local search refinement over a documents clustering
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class RefinementResult
+{
+    /**
+     * Strategy used in the refinement
+     */
+    private ClusterRefinement.Strategy strategy;
+    
+    /**
+     * Number of clusters of the refined clustering
+     */
+    private int clusterCount;
+    
+    /**
+     * Refined cluster for each document
+     */
+    private int[] labels;
+    
+    /**
+     * Number of single document moves evaluated
+     */
+    private long iterations;
+    
+    /**
+     * Number of single document moves applied
+     */
+    private long moves;
+    
+    /**
+     * Elapsed time of the refinement in nanoseconds
+     */
+    private long elapsedNanos;
+    
+    /**
+     * SSW of the clustering before the refinement
+     */
+    private float initialSSW;
+    
+    /**
+     * SSW of the clustering after the refinement
+     */
+    private float finalSSW;
+    
+    /**
+     * Silhouette Coefficient of the refined clustering, used to compare different numbers of clusters
+     */
+    private float silhouette;
+    
+    /**
+     * Initializes the refinement summary
+     * @param strategy Strategy used in the refinement
+     * @param clusterCount Number of clusters of the refined clustering
+     * @param labels Refined cluster for each document
+     * @param iterations Number of single document moves evaluated
+     * @param moves Number of single document moves applied
+     * @param elapsedNanos Elapsed time of the refinement in nanoseconds
+     * @param initialSSW SSW of the clustering before the refinement
+     * @param finalSSW SSW of the clustering after the refinement
+     */
+    public RefinementResult(ClusterRefinement.Strategy strategy, int clusterCount, int[] labels, 
+        long iterations, long moves, long elapsedNanos, float initialSSW, float finalSSW)
+    {
+        this.strategy = strategy;
+        this.clusterCount = clusterCount;
+        this.labels = labels;
+        this.iterations = iterations;
+        this.moves = moves;
+        this.elapsedNanos = elapsedNanos;
+        this.initialSSW = initialSSW;
+        this.finalSSW = finalSSW;
+    }
+    
+    /**
+     * Gets the number of refinement iterations evaluated per millisecond
+     * @return Iterations per millisecond, or 0 if no time was measured
+     */
+    public double getIterationsPerMillisecond()
+    {
+        return elapsedNanos == 0 ? 0 : iterations * 1000000.0 / elapsedNanos;
+    }
+    
+    /**
+     * Gets the strategy used in the refinement
+     * @return Refinement strategy
+     */
+    public ClusterRefinement.Strategy getStrategy()
+    {
+        return strategy;
+    }
+    
+    /**
+     * Gets the number of clusters of the refined clustering
+     * @return Number of clusters
+     */
+    public int getClusterCount()
+    {
+        return clusterCount;
+    }
+    
+    /**
+     * Gets the refined cluster for each document
+     * @return Cluster for each document
+     */
+    public int[] getLabels()
+    {
+        return labels;
+    }
+    
+    /**
+     * Gets the number of single document moves evaluated
+     * @return Number of iterations
+     */
+    public long getIterations()
+    {
+        return iterations;
+    }
+    
+    /**
+     * Gets the number of single document moves applied
+     * @return Number of moves
+     */
+    public long getMoves()
+    {
+        return moves;
+    }
+    
+    /**
+     * Gets the elapsed time of the refinement
+     * @return Elapsed time in nanoseconds
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+    
+    /**
+     * Gets the SSW of the clustering before the refinement
+     * @return Initial SSW
+     */
+    public float getInitialSSW()
+    {
+        return initialSSW;
+    }
+    
+    /**
+     * Gets the SSW of the clustering after the refinement
+     * @return Final SSW
+     */
+    public float getFinalSSW()
+    {
+        return finalSSW;
+    }
+    
+    /**
+     * Gets the Silhouette Coefficient of the refined clustering
+     * @return Silhouette Coefficient
+     */
+    public float getSilhouette()
+    {
+        return silhouette;
+    }
+    
+    /**
+     * Sets the Silhouette Coefficient of the refined clustering
+     * @param silhouette Silhouette Coefficient
+     */
+    public void setSilhouette(float silhouette)
+    {
+        this.silhouette = silhouette;
+    }
+}
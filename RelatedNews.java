@@ -0,0 +1,241 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+
+import edu.co.usbcali.ir.constants.LuceneConstants;
+
+/**
+ * Builds "more like this" queries for the indexed news from the term vectors stored by the {@link Indexer},
+ * so the content is never analyzed again. The query with the most interesting terms of each news is kept
+ * in a bounded cache, which is cleared when the index reader is reopened
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class RelatedNews
+{
+    /**
+     * Max number of terms in a related news query
+     */
+    private static final int MAX_QUERY_TERMS = 25;
+    
+    /**
+     * Min frequency of a term in the news to be an interesting term
+     */
+    private static final int MIN_TERM_FREQ = 2;
+    
+    /**
+     * Min number of news with a term to be an interesting term
+     */
+    private static final int MIN_DOC_FREQ = 5;
+    
+    /**
+     * Max number of news queries in the cache
+     */
+    private static final int CACHE_SIZE = 10000;
+    
+    /**
+     * Related news builders for each index directory
+     */
+    private static final Map<String, RelatedNews> INSTANCES = new ConcurrentHashMap<>();
+    
+    /**
+     * Least recently used cache with the query for each document id
+     */
+    private Map<Integer, Query> cache;
+    
+    /**
+     * Index version of the cached queries, because the document ids change when the index changes. It is
+     * only read and written while holding the lock of this builder
+     */
+    private long version = -1;
+    
+    /**
+     * Initializes the cache and clears it each time the shared reader is reopened
+     * @param sharedSearcher Shared searcher for the index directory
+     */
+    private RelatedNews(SharedSearcher sharedSearcher)
+    {
+        cache = Collections.synchronizedMap(new LinkedHashMap<Integer, Query>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Query> eldest)
+            {
+                return size() > CACHE_SIZE;
+            }
+        });
+        
+        sharedSearcher.addRefreshListener(new ReferenceManager.RefreshListener()
+        {
+            @Override
+            public void beforeRefresh()
+            {
+            }
+            
+            @Override
+            public void afterRefresh(boolean didRefresh)
+            {
+                if (didRefresh)
+                {
+                    cache.clear();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Gets the related news builder for an index directory
+     * @param indexDirPath Path from the index files
+     * @return Related news builder for the index directory
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public static RelatedNews getInstance(String indexDirPath) throws IOException
+    {
+        RelatedNews instance = INSTANCES.get(indexDirPath);
+        if (instance != null)
+        {
+            return instance;
+        }
+        
+        synchronized (INSTANCES)
+        {
+            instance = INSTANCES.get(indexDirPath);
+            if (instance == null)
+            {
+                instance = new RelatedNews(SharedSearcher.getInstance(indexDirPath));
+                INSTANCES.put(indexDirPath, instance);
+            }
+        }
+        
+        return instance;
+    }
+    
+    /**
+     * Gets the query to find the news related with a document, from the cache when it is possible. The
+     * version is checked under the same lock as each cache read and write, so a query built from an older
+     * reader is never cached after a newer reader cleared the cache
+     * @param reader Index reader used in the search
+     * @param doc Document id
+     * @return Query with the most interesting terms of the document
+     * @throws IOException Throws an exception when there is a problem reading the term vectors
+     */
+    public Query getQuery(DirectoryReader reader, int doc) throws IOException
+    {
+        long readerVersion = reader.getVersion();
+        
+        synchronized (this)
+        {
+            if (readerVersion > version)
+            {
+                cache.clear();
+                version = readerVersion;
+            }
+            
+            if (readerVersion == version)
+            {
+                Query query = cache.get(doc);
+                if (query != null)
+                {
+                    return query;
+                }
+            }
+        }
+        
+        Query query = createQuery(reader, doc);
+        
+        synchronized (this)
+        {
+            if (readerVersion == version)
+            {
+                cache.put(doc, query);
+            }
+        }
+        
+        return query;
+    }
+    
+    /**
+     * Creates the query with the most interesting terms of a document. The terms are scored by their
+     * frequency in the document term vector and their inverse document frequency in the index
+     * @param reader Index reader
+     * @param doc Document id
+     * @return Query with the interesting terms boosted by their score
+     * @throws IOException Throws an exception when there is a problem reading the term vectors
+     */
+    private Query createQuery(DirectoryReader reader, int doc) throws IOException
+    {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        
+        Terms vector = reader.getTermVector(doc, LuceneConstants.CONTENTS);
+        if (vector == null)
+        {
+            return builder.build();
+        }
+        
+        PriorityQueue<SimpleEntry<BytesRef, Float>> terms = new PriorityQueue<>(MAX_QUERY_TERMS + 1,
+            (first, second) -> Float.compare(first.getValue(), second.getValue()));
+        
+        int numDocs = reader.numDocs();
+        TermsEnum termsEnum = vector.iterator();
+        BytesRef text;
+        
+        while ((text = termsEnum.next()) != null)
+        {
+            long termFreq = termsEnum.totalTermFreq();
+            if (termFreq < MIN_TERM_FREQ)
+            {
+                continue;
+            }
+            
+            int docFreq = reader.docFreq(new Term(LuceneConstants.CONTENTS, text));
+            if (docFreq < MIN_DOC_FREQ)
+            {
+                continue;
+            }
+            
+            float idf = (float) (Math.log((numDocs + 1) / (double) (docFreq + 1)) + 1);
+            terms.add(new SimpleEntry<>(BytesRef.deepCopyOf(text), termFreq * idf));
+            
+            if (terms.size() > MAX_QUERY_TERMS)
+            {
+                terms.poll();
+            }
+        }
+        
+        List<SimpleEntry<BytesRef, Float>> bestTerms = new ArrayList<>(terms);
+        float maxScore = 0;
+        for (SimpleEntry<BytesRef, Float> term : bestTerms)
+        {
+            maxScore = Math.max(maxScore, term.getValue());
+        }
+        
+        for (SimpleEntry<BytesRef, Float> term : bestTerms)
+        {
+            Query termQuery = new TermQuery(new Term(LuceneConstants.CONTENTS, term.getKey()));
+            builder.add(new BoostQuery(termQuery, term.getValue() / maxScore), BooleanClause.Occur.SHOULD);
+        }
+        
+        return builder.build();
+    }
+}
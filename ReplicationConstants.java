@@ -0,0 +1,77 @@
+package edu.co.usbcali.ir.constants;
+
+/**
+ * Defines the constants from the index replication between a primary and its read-only replicas
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class ReplicationConstants
+{
+    /**
+     * System property with the replication role of the node: primary, replica, or not set for a node that
+     * does not replicate its index
+     */
+    public static final String ROLE_PROPERTY = "ir.replication.role";
+    
+    /**
+     * Role of the node that indexes the news and publishes its index commits
+     */
+    public static final String PRIMARY = "primary";
+    
+    /**
+     * Role of the read-only node that pulls the index commits of a primary
+     */
+    public static final String REPLICA = "replica";
+    
+    /**
+     * System property with the URL of the primary web application in a replica, e.g. http://localhost:8080
+     */
+    public static final String PRIMARY_URL_PROPERTY = "ir.replication.primary";
+    
+    /**
+     * System property with the milliseconds between the checks of a replica for new index commits
+     */
+    public static final String INTERVAL_PROPERTY = "ir.replication.interval";
+    
+    /**
+     * Path of the replication servlet in the web application
+     */
+    public static final String SERVLET_PATH = "/replicate/*";
+    
+    /**
+     * Name of the replicated index, the shard in the replication URLs
+     */
+    public static final String SHARD = "reuters";
+    
+    /**
+     * Key of the index commit data with the time when the primary wrote the commit, in milliseconds
+     */
+    public static final String COMMIT_TIME = "commitTime";
+    
+    /**
+     * Gets the replication role of the node
+     * @return Primary, replica, or null if the node does not replicate its index
+     */
+    public static String getRole()
+    {
+        return System.getProperty(ROLE_PROPERTY);
+    }
+    
+    /**
+     * Indicates if the node is a primary that publishes its index commits
+     * @return True if the node is a primary
+     */
+    public static boolean isPrimary()
+    {
+        return PRIMARY.equals(getRole());
+    }
+    
+    /**
+     * Indicates if the node is a read-only replica of a primary
+     * @return True if the node is a replica
+     */
+    public static boolean isReplica()
+    {
+        return REPLICA.equals(getRole());
+    }
+}
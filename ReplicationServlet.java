@@ -0,0 +1,97 @@
+package edu.co.usbcali.ir.rest;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.lucene.replicator.http.ReplicationService;
+
+import edu.co.usbcali.ir.constants.PathsConstants;
+import edu.co.usbcali.ir.constants.ReplicationConstants;
+import edu.co.usbcali.ir.processes.IndexPublisher;
+import edu.co.usbcali.ir.processes.IndexReplica;
+
+/**
+ * Starts the replication role of the node when the web application starts. In a primary it publishes the
+ * last index commit and serves the commits to the replicas in /replicate/reuters, with the protocol of the
+ * Lucene HTTP replicator. In a replica it starts the checks for new commits of the primary set in
+ * ir.replication.primary, every ir.replication.interval milliseconds (1000)
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class ReplicationServlet extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Service that answers the requests of the replicas, or null if the node is not a primary
+     */
+    private ReplicationService service;
+    
+    /**
+     * Starts the replication role of the node
+     * @throws ServletException Throws an exception if the index cannot be published or replicated
+     */
+    @Override
+    public void init() throws ServletException
+    {
+        String indexPath = System.getProperty(PathsConstants.INDEX_PATH_PROPERTY);
+        if (indexPath == null)
+        {
+            indexPath = getServletContext().getRealPath(PathsConstants.INDEX_PATH);
+        }
+        
+        try
+        {
+            if (ReplicationConstants.isPrimary())
+            {
+                IndexPublisher publisher = IndexPublisher.getInstance(indexPath);
+                publisher.publish();
+                service = new ReplicationService(Collections.singletonMap(ReplicationConstants.SHARD,
+                    publisher.getReplicator()));
+            }
+            else if (ReplicationConstants.isReplica())
+            {
+                IndexReplica.start(indexPath, System.getProperty(ReplicationConstants.PRIMARY_URL_PROPERTY),
+                    Long.getLong(ReplicationConstants.INTERVAL_PROPERTY, 1000));
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new ServletException("The index replication cannot start", ex);
+        }
+    }
+    
+    /**
+     * Answers a request of a replica: check for updates, obtain a file or release a session
+     * @param request Replica request
+     * @param response Replication response
+     * @throws ServletException Throws an exception if the request is not valid
+     * @throws IOException Throws an exception if the response cannot be written
+     */
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response)
+        throws ServletException, IOException
+    {
+        if (service == null)
+        {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "The node is not a replication primary");
+            return;
+        }
+        
+        service.perform(request, response);
+    }
+    
+    /**
+     * Stops the checks of a replica
+     */
+    @Override
+    public void destroy()
+    {
+        IndexReplica.stop();
+    }
+}
@@ -0,0 +1,222 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.co.usbcali.ir.util.FlightRecorderEvents;
+
+/**
+ * Extracts the news of the Reuters SGM files into TXT files, with the same names and content as the Lucene
+ * benchmark extractor: the date, title and body separated by blank lines. The structured fields that the TXT
+ * does not keep, the date, title, topics and places, are written in a JSON file next to each TXT
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class ReutersSgmParser
+{
+    /**
+     * Fields written in the TXT news, in the order they appear in the SGM
+     */
+    private static final Pattern TEXT_PATTERN = Pattern.compile(
+        "<TITLE>(.*?)</TITLE>|<DATE>(.*?)</DATE>|<BODY>(.*?)</BODY>");
+    
+    /**
+     * News date
+     */
+    private static final Pattern DATE_PATTERN = Pattern.compile("<DATE>(.*?)</DATE>");
+    
+    /**
+     * News title
+     */
+    private static final Pattern TITLE_PATTERN = Pattern.compile("<TITLE>(.*?)</TITLE>");
+    
+    /**
+     * News topics
+     */
+    private static final Pattern TOPICS_PATTERN = Pattern.compile("<TOPICS>(.*?)</TOPICS>");
+    
+    /**
+     * News places
+     */
+    private static final Pattern PLACES_PATTERN = Pattern.compile("<PLACES>(.*?)</PLACES>");
+    
+    /**
+     * Value of a list of topics or places
+     */
+    private static final Pattern VALUE_PATTERN = Pattern.compile("<D>(.*?)</D>");
+    
+    /**
+     * Escaped characters of the SGM and their values
+     */
+    private static final String[][] ENTITIES = { { "&amp;", "&" }, { "&lt;", "<" }, { "&gt;", ">" },
+        { "&quot;", "\"" }, { "&apos;", "'" } };
+    
+    /**
+     * Extracts the news of all the SGM files in a directory, in the order of their names, creating the
+     * directory of the news if it does not exist
+     * @param sgmDir Directory with the Reuters SGM files
+     * @param dataDir Directory to save the TXT and JSON files
+     * @return Number of extracted news
+     * @throws IOException Throws an exception if the files cannot be read or written
+     */
+    public int extract(Path sgmDir, Path dataDir) throws IOException
+    {
+        List<Path> sgmFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(sgmDir, "*.sgm"))
+        {
+            stream.forEach(sgmFiles::add);
+        }
+        Collections.sort(sgmFiles);
+        
+        Files.createDirectories(dataDir);
+        
+        int news = 0;
+        for (Path sgmFile : sgmFiles)
+        {
+            news += extractFile(sgmFile, dataDir);
+        }
+        
+        return news;
+    }
+    
+    /**
+     * Extracts the news of a SGM file. The lines of each news are joined with spaces, and the news are named
+     * with the SGM file name and their number in the file
+     * @param sgmFile Reuters SGM file
+     * @param dataDir Directory to save the TXT and JSON files
+     * @return Number of extracted news
+     * @throws IOException Throws an exception if the files cannot be read or written
+     */
+    public int extractFile(Path sgmFile, Path dataDir) throws IOException
+    {
+        FlightRecorderEvents.SgmExtraction event = null;
+        if (FlightRecorderEvents.ENABLED)
+        {
+            event = new FlightRecorderEvents.SgmExtraction();
+            event.begin();
+        }
+        
+        int docNumber = 0;
+        StringBuilder buffer = new StringBuilder();
+        
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(sgmFile),
+            StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (!line.contains("</REUTERS"))
+                {
+                    buffer.append(line).append(' ');
+                    continue;
+                }
+                
+                File file = dataDir.resolve(sgmFile.getFileName() + "-" + docNumber++ + ".txt").toFile();
+                writeNews(buffer, file);
+                buffer.setLength(0);
+            }
+        }
+        
+        if (event != null)
+        {
+            event.file = sgmFile.getFileName().toString();
+            event.bytes = Files.size(sgmFile);
+            event.news = docNumber;
+            event.commit();
+        }
+        
+        return docNumber;
+    }
+    
+    /**
+     * Writes the TXT and JSON files of a news
+     * @param news SGM of the news, with its lines joined
+     * @param file TXT file of the news
+     * @throws IOException Throws an exception if the files cannot be written
+     */
+    private void writeNews(CharSequence news, File file) throws IOException
+    {
+        String lineSeparator = System.lineSeparator();
+        StringBuilder text = new StringBuilder();
+        
+        Matcher matcher = TEXT_PATTERN.matcher(news);
+        while (matcher.find())
+        {
+            for (int i = 1; i <= matcher.groupCount(); i++)
+            {
+                if (matcher.group(i) != null)
+                {
+                    text.append(matcher.group(i));
+                }
+            }
+            text.append(lineSeparator).append(lineSeparator);
+        }
+        
+        Files.write(file.toPath(), unescape(text.toString()).getBytes(StandardCharsets.UTF_8));
+        
+        String date = getFirst(DATE_PATTERN, news);
+        NewsMetadata metadata = new NewsMetadata(unescape(getFirst(TITLE_PATTERN, news)).trim(),
+            NewsMetadata.parseDate(date), getValues(TOPICS_PATTERN, news), getValues(PLACES_PATTERN, news));
+        metadata.write(file);
+    }
+    
+    /**
+     * Gets the first match of a field in a news
+     * @param pattern Field pattern
+     * @param news SGM of the news
+     * @return Field value, or an empty string if the news has not the field
+     */
+    private static String getFirst(Pattern pattern, CharSequence news)
+    {
+        Matcher matcher = pattern.matcher(news);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+    
+    /**
+     * Gets the values of a list field in a news, like the topics or the places
+     * @param pattern Field pattern
+     * @param news SGM of the news
+     * @return Field values, lower case, empty if the news has not the field
+     */
+    private static List<String> getValues(Pattern pattern, CharSequence news)
+    {
+        List<String> values = new ArrayList<>();
+        Matcher valueMatcher = VALUE_PATTERN.matcher(getFirst(pattern, news));
+        while (valueMatcher.find())
+        {
+            String value = valueMatcher.group(1).trim();
+            if (!value.isEmpty())
+            {
+                values.add(value.toLowerCase());
+            }
+        }
+        
+        return values;
+    }
+    
+    /**
+     * Replaces the escaped characters of the SGM
+     * @param text Text with escaped characters
+     * @return Text with the characters
+     */
+    private static String unescape(String text)
+    {
+        for (String[] entity : ENTITIES)
+        {
+            text = text.replace(entity[0], entity[1]);
+        }
+        
+        return text;
+    }
+}
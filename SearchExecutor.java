@@ -0,0 +1,299 @@
+package edu.co.usbcali.ir.rest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor shared by the services to run the searches, with admission control for each endpoint.
+ * The number of threads and the queue capacity are fixed, so a burst of searches cannot create unbounded
+ * work, and each endpoint has a max of requests in flight. The requests over the limits are rejected at
+ * once instead of waiting. The limits can be configured with the system properties ir.search.threads,
+ * ir.search.queue, ir.admission.search, ir.admission.cluster, ir.admission.index and ir.admission.retryAfter
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class SearchExecutor
+{
+    /**
+     * Endpoints with their own admission limit
+     */
+    public enum Endpoint
+    {
+        /**
+         * Searches without clustering
+         */
+        SEARCH,
+        
+        /**
+         * Searches with clustering, which use much more CPU
+         */
+        CLUSTER,
+        
+        /**
+         * Index creation, which runs in the calling thread
+         */
+        INDEX
+    }
+    
+    /**
+     * Number of threads running searches
+     */
+    private static final int THREADS = Integer.getInteger("ir.search.threads",
+        Runtime.getRuntime().availableProcessors());
+    
+    /**
+     * Max number of searches waiting for a thread
+     */
+    private static final int QUEUE_CAPACITY = Integer.getInteger("ir.search.queue", 256);
+    
+    /**
+     * Seconds that a rejected client should wait before retrying
+     */
+    private static final int RETRY_AFTER = Integer.getInteger("ir.admission.retryAfter", 1);
+    
+    /**
+     * Shared executor instance
+     */
+    private static final SearchExecutor INSTANCE = new SearchExecutor();
+    
+    /**
+     * Thread pool with a bounded queue, rejecting the searches when the queue is full
+     */
+    private ThreadPoolExecutor executor;
+    
+    /**
+     * Max number of requests in flight for each endpoint
+     */
+    private Map<Endpoint, Integer> limits = new EnumMap<>(Endpoint.class);
+    
+    /**
+     * Available permits for each endpoint
+     */
+    private Map<Endpoint, Semaphore> permits = new EnumMap<>(Endpoint.class);
+    
+    /**
+     * Requests rejected by the admission limit of each endpoint
+     */
+    private Map<Endpoint, AtomicLong> rejections = new EnumMap<>(Endpoint.class);
+    
+    /**
+     * Searches rejected because the queue was full
+     */
+    private AtomicLong queueRejections = new AtomicLong();
+    
+    /**
+     * Creates the thread pool with daemon threads, so it does not block the container shutdown, and the
+     * admission permits for each endpoint
+     */
+    private SearchExecutor()
+    {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable ->
+        {
+            Thread thread = new Thread(runnable, "ir-search-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        
+        limits.put(Endpoint.SEARCH, Integer.getInteger("ir.admission.search", THREADS + QUEUE_CAPACITY));
+        limits.put(Endpoint.CLUSTER, Integer.getInteger("ir.admission.cluster", THREADS * 2));
+        limits.put(Endpoint.INDEX, Integer.getInteger("ir.admission.index", 1));
+        
+        for (Endpoint endpoint : Endpoint.values())
+        {
+            permits.put(endpoint, new Semaphore(limits.get(endpoint)));
+            rejections.put(endpoint, new AtomicLong());
+        }
+    }
+    
+    /**
+     * Gets the shared executor
+     * @return Shared executor instance
+     */
+    public static SearchExecutor getInstance()
+    {
+        return INSTANCE;
+    }
+    
+    /**
+     * Runs a task for an endpoint. The search tasks run in the executor threads while the calling thread
+     * waits, and the index tasks run in the calling thread
+     * @param endpoint Endpoint of the request
+     * @param task Task to run
+     * @param <T> Task result type
+     * @return Task result
+     * @throws OverloadedException Throws an exception if the endpoint limit is reached or the queue is full
+     * @throws Exception Throws the exception thrown by the task
+     */
+    public <T> T execute(Endpoint endpoint, Callable<T> task) throws Exception
+    {
+        acquire(endpoint);
+        try
+        {
+            if (endpoint == Endpoint.INDEX)
+            {
+                return task.call();
+            }
+            
+            try
+            {
+                return submit(task).get();
+            }
+            catch (ExecutionException ex)
+            {
+                if (ex.getCause() instanceof Exception)
+                {
+                    throw (Exception) ex.getCause();
+                }
+                
+                throw ex;
+            }
+        }
+        finally
+        {
+            release(endpoint);
+        }
+    }
+    
+    /**
+     * Takes one of the permits of an endpoint without waiting
+     * @param endpoint Endpoint of the request
+     * @throws OverloadedException Throws an exception with status 429 if the endpoint limit is reached
+     */
+    public void acquire(Endpoint endpoint) throws OverloadedException
+    {
+        if (!permits.get(endpoint).tryAcquire())
+        {
+            rejections.get(endpoint).incrementAndGet();
+            throw new OverloadedException("Too many " + endpoint.name().toLowerCase() + " requests in flight",
+                429, RETRY_AFTER);
+        }
+    }
+    
+    /**
+     * Returns a permit taken for an endpoint
+     * @param endpoint Endpoint of the request
+     */
+    public void release(Endpoint endpoint)
+    {
+        permits.get(endpoint).release();
+    }
+    
+    /**
+     * Submits a task to the executor
+     * @param task Task to run
+     * @param <T> Task result type
+     * @return Future with the task result
+     * @throws OverloadedException Throws an exception with status 503 if the queue is full
+     */
+    public <T> Future<T> submit(Callable<T> task) throws OverloadedException
+    {
+        try
+        {
+            return executor.submit(task);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            queueRejections.incrementAndGet();
+            throw new OverloadedException("The search queue is full", 503, RETRY_AFTER);
+        }
+    }
+    
+    /**
+     * Gets the number of searches waiting for a thread
+     * @return Queue depth
+     */
+    public int getQueueDepth()
+    {
+        return executor.getQueue().size();
+    }
+    
+    /**
+     * Gets the max number of searches waiting for a thread
+     * @return Queue capacity
+     */
+    public int getQueueCapacity()
+    {
+        return QUEUE_CAPACITY;
+    }
+    
+    /**
+     * Gets the number of threads running searches
+     * @return Active threads
+     */
+    public int getActiveThreads()
+    {
+        return executor.getActiveCount();
+    }
+    
+    /**
+     * Gets the number of threads for the searches
+     * @return Pool size
+     */
+    public int getThreads()
+    {
+        return THREADS;
+    }
+    
+    /**
+     * Gets the number of searches finished by the executor
+     * @return Completed searches
+     */
+    public long getCompletedTasks()
+    {
+        return executor.getCompletedTaskCount();
+    }
+    
+    /**
+     * Gets the number of searches rejected because the queue was full
+     * @return Queue rejections
+     */
+    public long getQueueRejections()
+    {
+        return queueRejections.get();
+    }
+    
+    /**
+     * Gets the max number of requests in flight for an endpoint
+     * @param endpoint Endpoint
+     * @return Admission limit
+     */
+    public int getLimit(Endpoint endpoint)
+    {
+        return limits.get(endpoint);
+    }
+    
+    /**
+     * Gets the number of requests in flight for an endpoint
+     * @param endpoint Endpoint
+     * @return Requests in flight
+     */
+    public int getInFlight(Endpoint endpoint)
+    {
+        return limits.get(endpoint) - permits.get(endpoint).availablePermits();
+    }
+    
+    /**
+     * Gets the number of requests rejected by the admission limit of an endpoint
+     * @param endpoint Endpoint
+     * @return Admission rejections
+     */
+    public long getRejections(Endpoint endpoint)
+    {
+        return rejections.get(endpoint).get();
+    }
+}
@@ -0,0 +1,148 @@
+package edu.co.usbcali.ir.processes;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+
+import edu.co.usbcali.ir.constants.LuceneConstants;
+
+/**
+ * Filters and order of a search over the structured fields of the news. The filters are non-scoring clauses
+ * over the index structures, so they do not change the scores: the date range runs over the date points, and
+ * the topics and places over their keyword terms, any of the given values matching. The date order reads
+ * the date doc values, with the news without date at the end
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class SearchFilter
+{
+    /**
+     * Search without filters, ordered by score
+     */
+    public static final SearchFilter NONE = new SearchFilter(Long.MIN_VALUE, Long.MAX_VALUE,
+        Collections.emptyList(), Collections.emptyList(), false);
+    
+    /**
+     * Min news date in milliseconds, inclusive
+     */
+    private long from;
+    
+    /**
+     * Max news date in milliseconds, inclusive
+     */
+    private long to;
+    
+    /**
+     * Topics of the news, or an empty list to not filter by topic
+     */
+    private List<String> topics;
+    
+    /**
+     * Places of the news, or an empty list to not filter by place
+     */
+    private List<String> places;
+    
+    /**
+     * Indicates if the news are ordered by date, newest first, instead of by score
+     */
+    private boolean sortByDate;
+    
+    /**
+     * Initializes the filters and order of a search
+     * @param from Min news date in milliseconds, inclusive, or Long.MIN_VALUE to not filter from a date
+     * @param to Max news date in milliseconds, inclusive, or Long.MAX_VALUE to not filter to a date
+     * @param topics Topics of the news, or an empty list to not filter by topic
+     * @param places Places of the news, or an empty list to not filter by place
+     * @param sortByDate Indicates if the news are ordered by date, newest first, instead of by score
+     */
+    public SearchFilter(long from, long to, List<String> topics, List<String> places, boolean sortByDate)
+    {
+        this.from = from;
+        this.to = to;
+        this.topics = topics;
+        this.places = places;
+        this.sortByDate = sortByDate;
+    }
+    
+    /**
+     * Adds the filters to a search query
+     * @param query Search query
+     * @return Query with the filters as non-scoring clauses, or the same query if there are no filters
+     */
+    public Query apply(Query query)
+    {
+        if (from == Long.MIN_VALUE && to == Long.MAX_VALUE && topics.isEmpty() && places.isEmpty())
+        {
+            return query;
+        }
+        
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(query, BooleanClause.Occur.MUST);
+        
+        if (from != Long.MIN_VALUE || to != Long.MAX_VALUE)
+        {
+            builder.add(LongPoint.newRangeQuery(LuceneConstants.DATE, from, to), BooleanClause.Occur.FILTER);
+        }
+        
+        addTerms(builder, LuceneConstants.TOPICS, topics);
+        addTerms(builder, LuceneConstants.PLACES, places);
+        
+        return builder.build();
+    }
+    
+    /**
+     * Adds a filter that matches any of the values of a keyword field
+     * @param builder Query builder
+     * @param field Keyword field
+     * @param values Values of the field, or an empty list to not filter by the field
+     */
+    private static void addTerms(BooleanQuery.Builder builder, String field, List<String> values)
+    {
+        if (values.isEmpty())
+        {
+            return;
+        }
+        
+        BooleanQuery.Builder anyValue = new BooleanQuery.Builder();
+        for (String value : values)
+        {
+            anyValue.add(new TermQuery(new Term(field, value.toLowerCase())), BooleanClause.Occur.SHOULD);
+        }
+        builder.add(anyValue.build(), BooleanClause.Occur.FILTER);
+    }
+    
+    /**
+     * Gets the order of the search
+     * @return Order by date, newest first, or null to order by score
+     */
+    public Sort getSort()
+    {
+        if (!sortByDate)
+        {
+            return null;
+        }
+        
+        SortField dateField = new SortField(LuceneConstants.DATE, SortField.Type.LONG, true);
+        dateField.setMissingValue(NewsMetadata.NO_DATE);
+        
+        return new Sort(dateField, SortField.FIELD_SCORE);
+    }
+    
+    /**
+     * Gets a text with the filters and order, to tell apart the searches with different filters
+     * @return Filters and order
+     */
+    @Override
+    public String toString()
+    {
+        return from + ":" + to + ":" + topics + ":" + places + ":" + sortByDate;
+    }
+}
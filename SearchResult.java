@@ -0,0 +1,293 @@
+package edu.co.usbcali.ir.rest;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import edu.co.usbcali.ir.processes.NewsMetadata;
+import edu.co.usbcali.ir.processes.RefinementResult;
+
+/**
+ * Keeps the result of a search, with its clustering and internal evaluation, and writes it as JSON with a
+ * streaming generator
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class SearchResult
+{
+    /**
+     * Recovered documents
+     */
+    private ScoreDoc[] scoreDocs;
+    
+    /**
+     * File path for each recovered document
+     */
+    private String[] paths;
+    
+    /**
+     * Cluster label for each recovered document, or null if the documents were not clustered
+     */
+    private String[] clusterLabels;
+    
+    /**
+     * Highlighted snippets for each recovered document, or null if the snippets were not requested
+     */
+    private String[][] snippets;
+    
+    /**
+     * Square Sum Between Clusters (SSB) index
+     */
+    private float ssb;
+    
+    /**
+     * Square Sum Within Clusters (SSW) index
+     */
+    private float ssw;
+    
+    /**
+     * Silhouette Coefficient
+     */
+    private float silhouette;
+    
+    /**
+     * Summary of the clustering refinement, or null if the clustering was not refined
+     */
+    private RefinementResult refinementResult;
+    
+    /**
+     * Number of near-duplicates folded, or -1 if the near-duplicates were not folded
+     */
+    private int collapsed = -1;
+    
+    /**
+     * Indicates if the search, the clustering or the highlighting was stopped by the time budget
+     */
+    private boolean partial;
+    
+    /**
+     * Elapsed time to search the documents in milliseconds
+     */
+    private long time;
+    
+    /**
+     * Initializes the result with the recovered documents
+     * @param scoreDocs Recovered documents
+     * @param paths File path for each recovered document
+     */
+    public SearchResult(ScoreDoc[] scoreDocs, String[] paths)
+    {
+        this.scoreDocs = scoreDocs;
+        this.paths = paths;
+    }
+    
+    /**
+     * Writes the result as a JSON object
+     * @param generator JSON generator
+     * @param compact Indicates if the fields that were not requested are left out: the document id, the
+     * default cluster label and the empty tests
+     * @throws IOException Throws an exception if the result cannot be written
+     */
+    public void writeTo(JsonGenerator generator, boolean compact) throws IOException
+    {
+        generator.writeStartObject();
+        
+        generator.writeArrayFieldStart("documents");
+        for (int i = 0; i < scoreDocs.length; i++)
+        {
+            generator.writeStartObject();
+            
+            if (!compact)
+            {
+                generator.writeNumberField("id", scoreDocs[i].doc);
+            }
+            
+            generator.writeStringField("path", paths[i]);
+            generator.writeNumberField("score", scoreDocs[i].score);
+            
+            if (scoreDocs[i] instanceof FieldDoc)
+            {
+                writeDate(generator, ((FieldDoc) scoreDocs[i]).fields[0]);
+            }
+            
+            if (clusterLabels != null)
+            {
+                generator.writeStringField("cluster", clusterLabels[i]);
+            }
+            else if (!compact)
+            {
+                generator.writeStringField("cluster", "Default");
+            }
+            
+            if (snippets != null)
+            {
+                generator.writeArrayFieldStart("snippets");
+                for (String snippet : snippets[i])
+                {
+                    generator.writeString(snippet);
+                }
+                generator.writeEndArray();
+            }
+            
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        
+        if (clusterLabels != null || !compact)
+        {
+            generator.writeArrayFieldStart("tests");
+            if (clusterLabels != null)
+            {
+                writeTest(generator, "ssb", ssb);
+                writeTest(generator, "ssw", ssw);
+                writeTest(generator, "silhouette", silhouette);
+            }
+            generator.writeEndArray();
+        }
+        
+        if (refinementResult != null)
+        {
+            generator.writeObjectFieldStart("refinement");
+            generator.writeStringField("strategy", refinementResult.getStrategy().name().toLowerCase());
+            generator.writeNumberField("clusters", refinementResult.getClusterCount());
+            generator.writeNumberField("iterations", refinementResult.getIterations());
+            generator.writeNumberField("moves", refinementResult.getMoves());
+            generator.writeNumberField("initialSSW", refinementResult.getInitialSSW());
+            generator.writeNumberField("finalSSW", refinementResult.getFinalSSW());
+            generator.writeNumberField("iterationsPerMs", refinementResult.getIterationsPerMillisecond());
+            generator.writeNumberField("time", refinementResult.getElapsedNanos() / 1000000.0);
+            generator.writeEndObject();
+        }
+        
+        if (collapsed >= 0)
+        {
+            generator.writeNumberField("collapsed", collapsed);
+        }
+        
+        if (partial || !compact)
+        {
+            generator.writeBooleanField("partial", partial);
+        }
+        
+        generator.writeNumberField("time", time);
+        generator.writeEndObject();
+    }
+    
+    /**
+     * Writes the date of a document sorted by date
+     * @param generator JSON generator
+     * @param date Sort value of the document, the date in milliseconds
+     * @throws IOException Throws an exception if the date cannot be written
+     */
+    private void writeDate(JsonGenerator generator, Object date) throws IOException
+    {
+        if (date instanceof Long && (Long) date != NewsMetadata.NO_DATE)
+        {
+            generator.writeStringField("date", Instant.ofEpochMilli((Long) date).toString());
+        }
+    }
+    
+    /**
+     * Writes an internal evaluation test result
+     * @param generator JSON generator
+     * @param type Test type
+     * @param value Test result
+     * @throws IOException Throws an exception if the test cannot be written
+     */
+    private void writeTest(JsonGenerator generator, String type, float value) throws IOException
+    {
+        generator.writeStartObject();
+        generator.writeStringField("type", type);
+        generator.writeNumberField("value", value);
+        generator.writeEndObject();
+    }
+    
+    /**
+     * Gets the recovered documents
+     * @return Recovered documents
+     */
+    public ScoreDoc[] getScoreDocs()
+    {
+        return scoreDocs;
+    }
+    
+    /**
+     * Sets the cluster label for each recovered document
+     * @param clusterLabels Cluster labels
+     */
+    public void setClusterLabels(String[] clusterLabels)
+    {
+        this.clusterLabels = clusterLabels;
+    }
+    
+    /**
+     * Sets the highlighted snippets for each recovered document
+     * @param snippets Snippets of each document
+     */
+    public void setSnippets(String[][] snippets)
+    {
+        this.snippets = snippets;
+    }
+    
+    /**
+     * Sets the internal evaluation results for the clustering
+     * @param ssb Square Sum Between Clusters (SSB) index
+     * @param ssw Square Sum Within Clusters (SSW) index
+     * @param silhouette Silhouette Coefficient
+     */
+    public void setTests(float ssb, float ssw, float silhouette)
+    {
+        this.ssb = ssb;
+        this.ssw = ssw;
+        this.silhouette = silhouette;
+    }
+    
+    /**
+     * Sets the summary of the clustering refinement
+     * @param refinementResult Refinement summary, or null if the clustering was not refined
+     */
+    public void setRefinementResult(RefinementResult refinementResult)
+    {
+        this.refinementResult = refinementResult;
+    }
+    
+    /**
+     * Sets the number of near-duplicates folded
+     * @param collapsed Number of near-duplicates folded
+     */
+    public void setCollapsed(int collapsed)
+    {
+        this.collapsed = collapsed;
+    }
+    
+    /**
+     * Indicates if the search, the clustering or the highlighting was stopped by the time budget
+     * @return True if the result is partial
+     */
+    public boolean isPartial()
+    {
+        return partial;
+    }
+    
+    /**
+     * Sets if the search, the clustering or the highlighting was stopped by the time budget
+     * @param partial True if the result is partial
+     */
+    public void setPartial(boolean partial)
+    {
+        this.partial = partial;
+    }
+    
+    /**
+     * Sets the elapsed time to search the documents
+     * @param time Elapsed time in milliseconds
+     */
+    public void setTime(long time)
+    {
+        this.time = time;
+    }
+}
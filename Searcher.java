@@ -1,36 +1,70 @@
 package edu.co.usbcali.ir.processes;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
 
 import edu.co.usbcali.ir.constants.LuceneConstants;
+import edu.co.usbcali.ir.util.FlightRecorderEvents;
+import edu.co.usbcali.ir.util.Metrics;
 
 /**
  * Recovers the documents from the indexed documents based in a search query
  * @author Joan Romero
  * @author Juan Carlos Chaparro
  */
-public class Searcher
+public class Searcher implements Closeable
 {
     /**
      * Index searcher object to read the index files
      */
     private IndexSearcher indexSearcher;
     
+    /**
+     * Index reader object opened over the index directory
+     */
+    private DirectoryReader reader;
+    
+    /**
+     * Path from the index files
+     */
+    private String indexDirPath;
+    
+    /**
+     * Shared searcher from which the index searcher is acquired
+     */
+    private SharedSearcher sharedSearcher;
+    
+    /**
+     * Indicates if this Searcher acquired the IndexSearcher and has to release it when it is closed
+     */
+    private boolean owner;
+    
     /**
      * Query parser object to analyze the string query
      */
@@ -40,19 +74,77 @@ public class Searcher
      * Query object to search the documents in the index
      */
     private Query query;
+    
+    /**
+     * Indicates if the last search was stopped by its time budget, so it recovered only the documents
+     * collected until then
+     */
+    private boolean partial;
+    
+    /**
+     * Stored fields loaded to get the file path of a document
+     */
+    private static final Set<String> FILE_PATH_FIELDS = Collections.singleton(LuceneConstants.FILE_PATH);
+    
+    /**
+     * Max number of documents returned in a search, configured with the system property ir.search.maxResults
+     */
+    public static final int MAX_RESULTS = Integer.getInteger("ir.search.maxResults", 1000);
+    
+    /**
+     * Max number of clauses in a search query, configured with the system property ir.search.maxClauses
+     */
+    public static final int MAX_CLAUSES = Integer.getInteger("ir.search.maxClauses", 64);
+    
+    /**
+     * Max number of wildcard, prefix, fuzzy, regexp and range clauses in a search query, which are expanded
+     * to all the matching terms, configured with the system property ir.search.maxMultiTermClauses
+     */
+    public static final int MAX_MULTI_TERM_CLAUSES = Integer.getInteger("ir.search.maxMultiTermClauses", 4);
 
     /**
-     * Initializes the Searcher objects, configuring the IndexSearcher and the QueryParser
+     * Initializes the Searcher objects, acquiring the IndexSearcher shared for the index directory and
+     * configuring the QueryParser. The Searcher must be closed to release the IndexSearcher
      * @param indexDirPath Path from the index files
      * @throws IOException Throws an exception when there is a problem in the index directory
      */
     public Searcher(String indexDirPath) throws IOException
     {
-        Directory indexDirectory = FSDirectory.open(Paths.get(indexDirPath));
-        IndexReader reader = DirectoryReader.open(indexDirectory);
+        sharedSearcher = SharedSearcher.getInstance(indexDirPath);
+        indexSearcher = sharedSearcher.acquire();
+        reader = (DirectoryReader) indexSearcher.getIndexReader();
+        
+        this.indexDirPath = indexDirPath;
+        queryParser = new QueryParser(LuceneConstants.CONTENTS, new StandardAnalyzer());
+        owner = true;
+    }
+    
+    /**
+     * Initializes a Searcher over the IndexSearcher already acquired by other Searcher, with its own
+     * QueryParser and its own reference to the index reader
+     * @param searcher Searcher that acquired the IndexSearcher
+     */
+    private Searcher(Searcher searcher)
+    {
+        sharedSearcher = searcher.sharedSearcher;
+        indexSearcher = searcher.indexSearcher;
+        reader = searcher.reader;
         
-        indexSearcher = new IndexSearcher(reader);
+        indexDirPath = searcher.indexDirPath;
         queryParser = new QueryParser(LuceneConstants.CONTENTS, new StandardAnalyzer());
+        reader.incRef();
+        owner = false;
+    }
+    
+    /**
+     * Creates a Searcher over the same IndexSearcher to search from another thread, because the QueryParser
+     * cannot be shared between threads. The created Searcher holds a reference to the index reader, so it can
+     * keep searching after this Searcher is closed, and it must be closed to release that reference
+     * @return Searcher sharing the acquired IndexSearcher
+     */
+    public Searcher share()
+    {
+        return new Searcher(this);
     }
 
     /**
@@ -65,10 +157,236 @@ public class Searcher
      */
     public TopDocs search(String searchQuery, int results) throws IOException, ParseException
     {
+        return search(searchQuery, results, 0);
+    }
+    
+    /**
+     * Searches the passed query in the index files recovering the matched documents, stopping the search
+     * when its time budget is spent. A stopped search returns the best documents collected until then and
+     * is marked as partial
+     * @param searchQuery Query to search in documents
+     * @param results Max of documents returned in the search
+     * @param timeout Time budget in milliseconds, or 0 to search without budget
+     * @return Recovered documents
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     * @throws ParseException Throws an exception if the search query cannot be parsed successfully or if it
+     * has more clauses than allowed
+     */
+    public TopDocs search(String searchQuery, int results, long timeout) throws IOException, ParseException
+    {
+        return search(searchQuery, results, timeout, SearchFilter.NONE);
+    }
+    
+    /**
+     * Searches the passed query in the index files with filters over the date, topics and places of the
+     * news, recovering the matched documents by score or by date. The filters do not change the scores
+     * @param searchQuery Query to search in documents
+     * @param results Max of documents returned in the search
+     * @param timeout Time budget in milliseconds, or 0 to search without budget
+     * @param filter Filters and order of the search
+     * @return Recovered documents
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     * @throws ParseException Throws an exception if the search query cannot be parsed successfully or if it
+     * has more clauses than allowed
+     */
+    public TopDocs search(String searchQuery, int results, long timeout, SearchFilter filter)
+        throws IOException, ParseException
+    {
+        if (results > MAX_RESULTS)
+        {
+            throw new IllegalArgumentException("The max number of results is " + MAX_RESULTS);
+        }
+        
+        FlightRecorderEvents.QueryParse parseEvent = null;
+        if (FlightRecorderEvents.ENABLED)
+        {
+            parseEvent = new FlightRecorderEvents.QueryParse();
+            parseEvent.begin();
+        }
+        long startTime = System.nanoTime();
         query = queryParser.parse(searchQuery);
-        return indexSearcher.search(query, results);
+        checkComplexity(query);
+        query = filter.apply(query);
+        Metrics.recordPhase(Metrics.PARSE, startTime);
+        if (parseEvent != null)
+        {
+            parseEvent.query = searchQuery;
+            parseEvent.commit();
+        }
+        
+        FlightRecorderEvents.IndexSearch searchEvent = null;
+        if (FlightRecorderEvents.ENABLED)
+        {
+            searchEvent = new FlightRecorderEvents.IndexSearch();
+            searchEvent.begin();
+        }
+        startTime = System.nanoTime();
+        int numHits = Math.max(1, Math.min(results, reader.maxDoc()));
+        Sort sort = filter.getSort();
+        TopDocsCollector<?> collector = sort == null ? TopScoreDocCollector.create(numHits)
+            : TopFieldCollector.create(sort, numHits, true, true, true);
+        Collector searchCollector = timeout > 0 ? new TimeLimitingCollector(collector,
+            TimeLimitingCollector.getGlobalCounter(), timeout) : collector;
+        
+        partial = false;
+        try
+        {
+            indexSearcher.search(query, searchCollector);
+        }
+        catch (TimeLimitingCollector.TimeExceededException ex)
+        {
+            partial = true;
+        }
+        
+        TopDocs hits = collector.topDocs();
+        Metrics.recordPhase(Metrics.SEARCH, startTime);
+        
+        if (searchEvent != null)
+        {
+            searchEvent.query = searchQuery;
+            searchEvent.hits = hits.totalHits;
+            searchEvent.documents = hits.scoreDocs.length;
+            searchEvent.segments = getSegmentCount();
+            searchEvent.partial = partial;
+            searchEvent.commit();
+        }
+        
+        return hits;
+    }
+    
+    /**
+     * Indicates if the last search was stopped by its time budget
+     * @return True if the last search recovered only part of the matched documents
+     */
+    public boolean isPartial()
+    {
+        return partial;
+    }
+    
+    /**
+     * Checks that a query does not have more clauses than allowed, counting the nested boolean queries and
+     * the terms of the phrase queries
+     * @param query Parsed query
+     * @throws ParseException Throws an exception if the query has too many clauses
+     */
+    private void checkComplexity(Query query) throws ParseException
+    {
+        int[] counts = new int[2];
+        countClauses(query, counts);
+        
+        if (counts[0] > MAX_CLAUSES)
+        {
+            throw new ParseException("The query has " + counts[0] + " clauses and the max is " + MAX_CLAUSES);
+        }
+        
+        if (counts[1] > MAX_MULTI_TERM_CLAUSES)
+        {
+            throw new ParseException("The query has " + counts[1] + " wildcard, fuzzy or range clauses and the "
+                + "max is " + MAX_MULTI_TERM_CLAUSES);
+        }
+    }
+    
+    /**
+     * Counts the clauses of a query
+     * @param query Query or nested query
+     * @param counts Number of clauses and number of multi-term clauses, updated with the query clauses
+     */
+    private void countClauses(Query query, int[] counts)
+    {
+        if (query instanceof BooleanQuery)
+        {
+            for (BooleanClause clause : ((BooleanQuery) query).clauses())
+            {
+                countClauses(clause.getQuery(), counts);
+            }
+        }
+        else if (query instanceof BoostQuery)
+        {
+            countClauses(((BoostQuery) query).getQuery(), counts);
+        }
+        else if (query instanceof PhraseQuery)
+        {
+            counts[0] += ((PhraseQuery) query).getTerms().length;
+        }
+        else if (query instanceof MultiTermQuery)
+        {
+            counts[0]++;
+            counts[1]++;
+        }
+        else
+        {
+            counts[0]++;
+        }
+    }
+
+    /**
+     * Searches the news related with an indexed document, using the most interesting terms from its term
+     * vector
+     * @param doc Document id
+     * @param results Max of documents returned in the search
+     * @return Recovered documents, without the given document
+     * @throws IOException Throws an exception when there is a problem in the index directory or if the
+     * document does not exist
+     */
+    public TopDocs searchRelated(int doc, int results) throws IOException
+    {
+        if (doc < 0 || doc >= reader.maxDoc())
+        {
+            throw new IOException("The document " + doc + " does not exist in the index");
+        }
+        
+        query = RelatedNews.getInstance(indexDirPath).getQuery(reader, doc);
+        TopDocs hits = indexSearcher.search(query, results + 1);
+        
+        List<ScoreDoc> related = new ArrayList<>(results);
+        for (ScoreDoc scoreDoc : hits.scoreDocs)
+        {
+            if (scoreDoc.doc != doc && related.size() < results)
+            {
+                related.add(scoreDoc);
+            }
+        }
+        
+        return new TopDocs(hits.totalHits, related.toArray(new ScoreDoc[related.size()]), hits.getMaxScore());
+    }
+    
+    /**
+     * Gets the document id of an indexed file
+     * @param filePath File path saved in the index
+     * @return Document id, or -1 if the file is not in the index
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public int getDocumentId(String filePath) throws IOException
+    {
+        Query pathQuery = queryParser.createBooleanQuery(LuceneConstants.FILE_PATH, filePath, 
+            BooleanClause.Occur.MUST);
+        if (pathQuery == null)
+        {
+            return -1;
+        }
+        
+        for (ScoreDoc scoreDoc : indexSearcher.search(pathQuery, 10).scoreDocs)
+        {
+            if (filePath.equals(getDocument(scoreDoc).get(LuceneConstants.FILE_PATH)))
+            {
+                return scoreDoc.doc;
+            }
+        }
+        
+        return -1;
     }
 
+    /**
+     * Folds the near-duplicate news of the recovered documents into the best scored one of each group
+     * @param scoreDocs Recovered documents sorted by score
+     * @return Recovered documents without near-duplicates
+     * @throws IOException Throws an exception when there is a problem reading the stored signatures
+     */
+    public ScoreDoc[] collapseDuplicates(ScoreDoc[] scoreDocs) throws IOException
+    {
+        return LshIndex.getInstance(indexDirPath, reader).collapse(scoreDocs);
+    }
+    
     /**
      * Gets the Document object from a recovered document from the index
      * @param scoreDoc Recovered document
@@ -80,4 +398,61 @@ public class Searcher
     {
         return indexSearcher.doc(scoreDoc.doc);
     }
+    
+    /**
+     * Gets the file path from a recovered document, loading only that stored field instead of the whole
+     * document
+     * @param scoreDoc Recovered document
+     * @return File path saved in the index
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public String getFilePath(ScoreDoc scoreDoc) throws IOException
+    {
+        return indexSearcher.doc(scoreDoc.doc, FILE_PATH_FIELDS).get(LuceneConstants.FILE_PATH);
+    }
+    
+    /**
+     * Gets the query of the last search
+     * @return Parsed query, or null if there was no search
+     */
+    public Query getQuery()
+    {
+        return query;
+    }
+    
+    /**
+     * Gets the index reader used in the searches
+     * @return Index reader
+     */
+    public DirectoryReader getReader()
+    {
+        return reader;
+    }
+    
+    /**
+     * Gets the number of segments in the index reader, each one searched separately
+     * @return Number of segments
+     */
+    public int getSegmentCount()
+    {
+        return reader.leaves().size();
+    }
+    
+    /**
+     * Releases the IndexSearcher acquired from the shared searcher, if this Searcher acquired it, or the
+     * reference to the index reader taken when this Searcher was shared
+     * @throws IOException Throws an exception when the index reader cannot be released
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (owner)
+        {
+            sharedSearcher.release(indexSearcher);
+        }
+        else
+        {
+            reader.decRef();
+        }
+    }
 }
@@ -1,31 +1,70 @@
 package edu.co.usbcali.ir.rest;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import javax.servlet.ServletContext;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
-import org.apache.lucene.document.Document;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.suggest.Lookup;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 
-import edu.co.usbcali.ir.constants.LuceneConstants;
 import edu.co.usbcali.ir.constants.PathsConstants;
+import edu.co.usbcali.ir.constants.ReplicationConstants;
 import edu.co.usbcali.ir.processes.Cluster;
+import edu.co.usbcali.ir.processes.ClusterRefinement;
 import edu.co.usbcali.ir.processes.ExtractReutersNews;
+import edu.co.usbcali.ir.processes.IndexPublisher;
+import edu.co.usbcali.ir.processes.IndexReplica;
 import edu.co.usbcali.ir.processes.Indexer;
+import edu.co.usbcali.ir.processes.IndexingTelemetry;
 import edu.co.usbcali.ir.processes.InternalEvaluation;
+import edu.co.usbcali.ir.processes.LshIndex;
+import edu.co.usbcali.ir.processes.SearchFilter;
 import edu.co.usbcali.ir.processes.Searcher;
+import edu.co.usbcali.ir.processes.SharedSearcher;
+import edu.co.usbcali.ir.processes.SnippetHighlighter;
+import edu.co.usbcali.ir.processes.Suggester;
+import edu.co.usbcali.ir.processes.WarmUp;
+import edu.co.usbcali.ir.util.FlightRecorderEvents;
+import edu.co.usbcali.ir.util.JsonStreams;
+import edu.co.usbcali.ir.util.Metrics;
+import edu.co.usbcali.ir.util.QueryProfile;
+import edu.co.usbcali.ir.util.SlowQueryLog;
 import edu.co.usbcali.ir.util.TextFileFilter;
 
 /**
@@ -42,11 +81,47 @@ public class Services
     @Context 
     private ServletContext context;
     
+    /**
+     * Default time budget for a search in milliseconds, configured with the system property ir.search.timeout
+     */
+    private static final long DEFAULT_TIMEOUT = Long.getLong("ir.search.timeout", 2000);
+    
+    /**
+     * Max time budget that a client can ask for a search in milliseconds, configured with the system
+     * property ir.search.maxTimeout
+     */
+    private static final long MAX_TIMEOUT = Long.getLong("ir.search.maxTimeout", 10000);
+    
+    /**
+     * Max age in seconds that clients and edge caches keep a search output before they revalidate it,
+     * configured with the system property ir.cache.maxAge
+     */
+    private static final int CACHE_MAX_AGE = Integer.getInteger("ir.cache.maxAge", 60);
+    
     /**
      * Makes a search in indexed documents. The documents can be clustered using Covering Array method
      * @param searchQuery Query to search in documents
      * @param cluster Indicates if the documents are going to be clustered or not
      * @param results Max of documents returned in the search
+     * @param refine Local search to refine the best Covering Array clustering: none, hill_climbing or
+     * tabu_search
+     * @param budget Time budget for the refinement in milliseconds
+     * @param minClusters Min number of clusters evaluated in the refinement
+     * @param maxClusters Max number of clusters evaluated in the refinement
+     * @param collapse Indicates if the near-duplicate news are folded into one document before clustering
+     * @param timeout Time budget for the search, the clustering and the highlighting in milliseconds, or 0
+     * for the default budget. The output is marked as partial when the budget is spent
+     * @param compact Indicates if the fields that were not requested are left out of the output
+     * @param from Min news date, like 1987-02-26, inclusive, or null to not filter from a date
+     * @param to Max news date, like 1987-03-31, inclusive, or null to not filter to a date
+     * @param topics Topics of the news, any of them matching, or none to not filter by topic
+     * @param places Places of the news, any of them matching, or none to not filter by place
+     * @param sort Order of the news: score, or date for the newest first
+     * @param snippets Number of highlighted snippets for each news, or 0 to not highlight the news
+     * @param snippetSize Size of each snippet in characters
+     * @param acceptEncoding Encodings accepted by the client, the output is compressed if gzip is accepted
+     * @param request Request with the If-None-Match and If-Modified-Since conditions, answered with 304
+     * without searching while the index commit is the same
      * @return A JSON output with recovered documents and elapsed time to search them  
      */
     @GET
@@ -54,97 +129,689 @@ public class Services
     @Produces("application/json")
     @SuppressWarnings({ "unchecked" })
     public Response getDocuments(@PathParam("searchQuery") String searchQuery,
-        @PathParam("cluster") boolean cluster, @PathParam("results") int results)
+        @PathParam("cluster") boolean cluster, @PathParam("results") int results,
+        @QueryParam("refine") @DefaultValue("none") String refine,
+        @QueryParam("budget") @DefaultValue("50") long budget,
+        @QueryParam("minClusters") @DefaultValue("5") int minClusters,
+        @QueryParam("maxClusters") @DefaultValue("5") int maxClusters,
+        @QueryParam("collapse") @DefaultValue("false") boolean collapse,
+        @QueryParam("timeout") @DefaultValue("0") long timeout,
+        @QueryParam("compact") @DefaultValue("false") boolean compact,
+        @QueryParam("from") String from, @QueryParam("to") String to,
+        @QueryParam("topic") List<String> topics, @QueryParam("place") List<String> places,
+        @QueryParam("sort") @DefaultValue("score") String sort,
+        @QueryParam("snippets") @DefaultValue("0") int snippets,
+        @QueryParam("snippetSize") @DefaultValue("100") int snippetSize,
+        @HeaderParam("Accept-Encoding") String acceptEncoding, @Context Request request)
     {
+        String indexPath = getPath(PathsConstants.INDEX_PATH_PROPERTY, PathsConstants.INDEX_PATH);
+        SearchExecutor.Endpoint endpoint = cluster ? SearchExecutor.Endpoint.CLUSTER 
+            : SearchExecutor.Endpoint.SEARCH;
+        String endpointName = endpoint.name().toLowerCase();
+        long requestStartTime = System.nanoTime();
+        
         try
         {
-            Searcher searcher = new Searcher(context.getRealPath(PathsConstants.INDEX_PATH));
+            SearchFilter filter = getFilter(from, to, topics, places, sort);
+            SharedSearcher sharedSearcher = SharedSearcher.getInstance(indexPath);
+            EntityTag entityTag = getEntityTag(sharedSearcher.getGeneration(), searchQuery, cluster, results,
+                refine, budget, minClusters, maxClusters, collapse, timeout, compact, filter, snippets,
+                snippetSize, JsonStreams.acceptsGzip(acceptEncoding));
+            Date lastModified = new Date(sharedSearcher.getLastModified());
             
-            long startTime = System.currentTimeMillis();
-            TopDocs hits = searcher.search(searchQuery, results);
-            long endTime = System.currentTimeMillis();
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(lastModified, entityTag);
+            if (notModified != null)
+            {
+                return notModified.cacheControl(getCacheControl()).header("Vary", "Accept-Encoding").build();
+            }
             
-            Cluster clus = new Cluster();
-            List<List<Integer>> clusters = null;
+            SearchResult result = SearchExecutor.getInstance().execute(endpoint, () ->
+            {
+                try (Searcher searcher = new Searcher(indexPath))
+                {
+                    return search(searcher, searchQuery, cluster, results, refine, budget, minClusters,
+                        maxClusters, collapse, getTimeout(timeout), filter, snippets, snippetSize);
+                }
+            });
             
-            if (cluster)
+            Response.ResponseBuilder builder = JsonStreams.stream(generator ->
             {
-                List<List<Integer>> clusteringResult = clus.getDocumentsClustering(hits.scoreDocs, results);
-                clusters = clusteringResult.stream().collect(Collectors.toList());
+                long serializeStartTime = System.nanoTime();
+                result.writeTo(generator, compact);
+                Metrics.recordPhase(Metrics.SERIALIZE, serializeStartTime);
+            }, acceptEncoding);
+            
+            if (result.isPartial())
+            {
+                CacheControl noStore = new CacheControl();
+                noStore.setNoStore(true);
+                
+                return builder.cacheControl(noStore).build();
             }
             
+            return builder.tag(entityTag).lastModified(lastModified).cacheControl(getCacheControl()).build();
+        }
+        catch (OverloadedException ex)
+        {
+            return getOverloadedResponse(ex);
+        }
+        catch (IOException | ParseException ex)
+        {
+            Metrics.recordError(endpointName);
+            
+            JSONObject json = new JSONObject();
+            json.put("status", "Exception");
+            json.put("response", ex.getMessage());
+            
+            return Response.status(200).entity(json.toJSONString()).build();
+        }
+        catch (Exception ex)
+        {
+            Metrics.recordError(endpointName);
+            
             JSONObject json = new JSONObject();
-            JSONArray docs = new JSONArray();
+            json.put("status", "Exception");
+            json.put("response", ex.getMessage());
             
-            for (int i = 0; i < hits.scoreDocs.length; i++)
+            return Response.status(200).entity(json.toJSONString()).build();
+        }
+        finally
+        {
+            Metrics.recordRequest(endpointName, requestStartTime);
+        }
+    }
+    
+    /**
+     * Makes many searches in one call. The searches run concurrently in the shared search executor over the
+     * same index searcher, and each one reports its own result, elapsed time and error, so a slow or failing
+     * search does not block the others. Each search takes a permit of the search or the cluster endpoint, and
+     * a search over the admission limit or the queue capacity is reported as rejected. A search that is still
+     * queued when the timeout is spent is not run, and a running one keeps its own reference to the index
+     * reader and its permit until it finishes
+     * @param body JSON array with the searches, each one with the query and the optional results (10 by
+     * default) and cluster (false by default) options
+     * @param timeout Max time to wait for all the searches in milliseconds
+     * @param compact Indicates if the fields that were not requested are left out of the output
+     * @param acceptEncoding Encodings accepted by the client, the output is compressed if gzip is accepted
+     * @return A JSON output with the result of each search in the request order
+     */
+    @POST
+    @Path("/search/batch")
+    @Consumes("application/json")
+    @Produces("application/json")
+    @SuppressWarnings({ "unchecked" })
+    public Response getBatchDocuments(String body, @QueryParam("timeout") @DefaultValue("10000") long timeout,
+        @QueryParam("compact") @DefaultValue("false") boolean compact,
+        @HeaderParam("Accept-Encoding") String acceptEncoding)
+    {
+        long startTime = System.currentTimeMillis();
+        long requestStartTime = System.nanoTime();
+        
+        String indexPath = getPath(PathsConstants.INDEX_PATH_PROPERTY, PathsConstants.INDEX_PATH);
+        try (Searcher searcher = new Searcher(indexPath))
+        {
+            JSONArray searches = (JSONArray) new JSONParser().parse(body);
+            
+            String[] queries = new String[searches.size()];
+            long[] times = new long[searches.size()];
+            Searcher[] searchers = new Searcher[searches.size()];
+            AtomicBoolean[] started = new AtomicBoolean[searches.size()];
+            SearchExecutor.Endpoint[] endpoints = new SearchExecutor.Endpoint[searches.size()];
+            String[] rejections = new String[searches.size()];
+            List<Future<SearchResult>> futures = new ArrayList<>();
+            
+            for (int i = 0; i < searches.size(); i++)
             {
-                ScoreDoc scoreDoc = hits.scoreDocs[i];
-                Document doc = searcher.getDocument(scoreDoc);
+                JSONObject search = (JSONObject) searches.get(i);
                 
-                JSONObject d = new JSONObject();
-                d.put("path", doc.get(LuceneConstants.FILE_PATH));
-                d.put("score", scoreDoc.score);
+                String searchQuery = (String) search.get("query");
+                int results = search.containsKey("results") ? ((Number) search.get("results")).intValue() : 10;
+                boolean cluster = Boolean.TRUE.equals(search.get("cluster"));
+                SearchExecutor.Endpoint endpoint = cluster ? SearchExecutor.Endpoint.CLUSTER
+                    : SearchExecutor.Endpoint.SEARCH;
+                queries[i] = searchQuery;
                 
-                if (cluster)
+                try
                 {
-                    d.put("cluster", clus.getDocumentCluster(clusters, i));
+                    SearchExecutor.getInstance().acquire(endpoint);
                 }
-                else
+                catch (OverloadedException ex)
                 {
-                    d.put("cluster", "Default");
+                    rejections[i] = ex.getMessage();
+                    futures.add(null);
+                    continue;
                 }
                 
-                docs.add(d);
+                Searcher querySearcher = searcher.share();
+                AtomicBoolean queryStarted = new AtomicBoolean();
+                int index = i;
+                searchers[i] = querySearcher;
+                started[i] = queryStarted;
+                endpoints[i] = endpoint;
+                
+                try
+                {
+                    futures.add(SearchExecutor.getInstance().submit(() ->
+                    {
+                        if (!queryStarted.compareAndSet(false, true))
+                        {
+                            return null;
+                        }
+                        
+                        long queryStartTime = System.nanoTime();
+                        try
+                        {
+                            return search(querySearcher, searchQuery, cluster, results, "none", 0, 5, 5, false,
+                                getTimeout(timeout), SearchFilter.NONE, 0, 0);
+                        }
+                        finally
+                        {
+                            times[index] = System.nanoTime() - queryStartTime;
+                            querySearcher.close();
+                            SearchExecutor.getInstance().release(endpoint);
+                        }
+                    }));
+                }
+                catch (OverloadedException ex)
+                {
+                    querySearcher.close();
+                    SearchExecutor.getInstance().release(endpoint);
+                    rejections[i] = ex.getMessage();
+                    futures.add(null);
+                }
             }
             
-            JSONArray tests = new JSONArray();
+            long deadline = startTime + timeout;
+            Object[] outcomes = new Object[futures.size()];
             
-            if (cluster)
+            for (int i = 0; i < futures.size(); i++)
             {
-                InternalEvaluation internalEval = new InternalEvaluation(clusters, hits.scoreDocs);
+                Future<SearchResult> future = futures.get(i);
+                if (future == null)
+                {
+                    outcomes[i] = rejections[i];
+                    continue;
+                }
                 
-                float ssbResult = internalEval.getSSBResult();
-                float sswResult = internalEval.getSSWResult();
-                float silResult = 0;
+                try
+                {
+                    long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                    outcomes[i] = future.get(remaining, TimeUnit.MILLISECONDS);
+                }
+                catch (TimeoutException ex)
+                {
+                    future.cancel(false);
+                    if (started[i].compareAndSet(false, true))
+                    {
+                        searchers[i].close();
+                        SearchExecutor.getInstance().release(endpoints[i]);
+                    }
+                    outcomes[i] = "The search did not finish in " + timeout + " ms";
+                }
+                catch (ExecutionException ex)
+                {
+                    outcomes[i] = String.valueOf(ex.getCause().getMessage());
+                }
+            }
+            
+            long endTime = System.currentTimeMillis();
+            
+            return JsonStreams.stream(generator ->
+            {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("searches");
                 
-                JSONObject ssb = new JSONObject();
-                ssb.put("type", "ssb");
-                ssb.put("value", ssbResult);
-                tests.add(ssb);
+                for (int i = 0; i < outcomes.length; i++)
+                {
+                    generator.writeStartObject();
+                    generator.writeStringField("query", queries[i]);
+                    
+                    if (outcomes[i] instanceof SearchResult)
+                    {
+                        generator.writeStringField("status", "Success");
+                        generator.writeNumberField("time", times[i] / 1000000.0);
+                        generator.writeFieldName("result");
+                        ((SearchResult) outcomes[i]).writeTo(generator, compact);
+                    }
+                    else
+                    {
+                        generator.writeStringField("status", "Exception");
+                        generator.writeStringField("response", (String) outcomes[i]);
+                        
+                        if (times[i] > 0)
+                        {
+                            generator.writeNumberField("time", times[i] / 1000000.0);
+                        }
+                    }
+                    
+                    generator.writeEndObject();
+                }
                 
-                JSONObject ssw = new JSONObject();
-                ssw.put("type", "ssw");
-                ssw.put("value", sswResult);
-                tests.add(ssw);
+                generator.writeEndArray();
+                generator.writeNumberField("time", (endTime - startTime));
+                generator.writeEndObject();
+            }, acceptEncoding).build();
+        }
+        catch (Exception ex)
+        {
+            Metrics.recordError("batch");
+            
+            JSONObject json = new JSONObject();
+            json.put("status", "Exception");
+            json.put("response", ex.getMessage());
+            
+            return Response.status(200).entity(json.toJSONString()).build();
+        }
+        finally
+        {
+            Metrics.recordRequest("batch", requestStartTime);
+        }
+    }
+    
+    /**
+     * Searches the query and clusters the recovered documents, profiling the search. The profile is written
+     * to the slow query log, with the explanation of the top hits, when the search takes longer than the
+     * threshold
+     * @param searcher Searcher over the index
+     * @param searchQuery Query to search in documents
+     * @param cluster Indicates if the documents are going to be clustered or not
+     * @param results Max of documents returned in the search
+     * @param refine Local search to refine the best Covering Array clustering: none, hill_climbing or
+     * tabu_search
+     * @param budget Time budget for the refinement in milliseconds
+     * @param minClusters Min number of clusters evaluated in the refinement
+     * @param maxClusters Max number of clusters evaluated in the refinement
+     * @param collapse Indicates if the near-duplicate news are folded into one document before clustering
+     * @param timeout Time budget for the search, the clustering and the highlighting in milliseconds
+     * @param filter Filters and order of the search over the date, topics and places of the news
+     * @param snippets Number of highlighted snippets for each news, or 0 to not highlight the news
+     * @param snippetSize Size of each snippet in characters
+     * @return Search result with the recovered documents, their clustering and the internal evaluation
+     * @throws Exception Throws an exception if the search or the clustering cannot be done
+     */
+    private SearchResult search(Searcher searcher, String searchQuery, boolean cluster, int results,
+        String refine, long budget, int minClusters, int maxClusters, boolean collapse, long timeout,
+        SearchFilter filter, int snippets, int snippetSize) throws Exception
+    {
+        QueryProfile profile = QueryProfile.start(searchQuery);
+        FlightRecorderEvents.SearchRequest event = null;
+        if (FlightRecorderEvents.ENABLED)
+        {
+            event = new FlightRecorderEvents.SearchRequest();
+            event.begin();
+        }
+        
+        try
+        {
+            SearchResult result = search(searcher, profile, searchQuery, cluster, results, refine, budget,
+                minClusters, maxClusters, collapse, timeout, filter, snippets, snippetSize);
+            if (event != null)
+            {
+                event.partial = result.isPartial();
+            }
+            
+            return result;
+        }
+        finally
+        {
+            profile.end();
+            
+            if (event != null)
+            {
+                event.query = searchQuery;
+                event.cluster = cluster;
+                event.results = results;
+                event.commit();
+            }
+            
+            if (SlowQueryLog.isSlow(profile.getElapsedTime()))
+            {
+                profile.retain(searcher.getReader());
+                SlowQueryLog.log(profile);
+            }
+        }
+    }
+    
+    /**
+     * Searches the query and clusters the recovered documents, loading only the file path of each document
+     * and highlighting its snippets from the term vectors when they are requested
+     * @param searcher Searcher over the index
+     * @param profile Profile of the search
+     * @param searchQuery Query to search in documents
+     * @param cluster Indicates if the documents are going to be clustered or not
+     * @param results Max of documents returned in the search
+     * @param refine Local search to refine the best Covering Array clustering: none, hill_climbing or
+     * tabu_search
+     * @param budget Time budget for the refinement in milliseconds
+     * @param minClusters Min number of clusters evaluated in the refinement
+     * @param maxClusters Max number of clusters evaluated in the refinement
+     * @param collapse Indicates if the near-duplicate news are folded into one document before clustering
+     * @param timeout Time budget for the search, the clustering and the highlighting in milliseconds. The
+     * search stops collecting documents, the clustering stops evaluating Covering Array lines and the news
+     * left are not highlighted when it is spent
+     * @param filter Filters and order of the search over the date, topics and places of the news
+     * @param snippets Number of highlighted snippets for each news, or 0 to not highlight the news
+     * @param snippetSize Size of each snippet in characters
+     * @return Search result with the recovered documents, their clustering and the internal evaluation
+     * @throws Exception Throws an exception if the search or the clustering cannot be done
+     */
+    private SearchResult search(Searcher searcher, QueryProfile profile, String searchQuery, boolean cluster,
+        int results, String refine, long budget, int minClusters, int maxClusters, boolean collapse,
+        long timeout, SearchFilter filter, int snippets, int snippetSize) throws Exception
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        
+        long startTime = System.currentTimeMillis();
+        TopDocs hits = searcher.search(searchQuery, results, timeout, filter);
+        long endTime = System.currentTimeMillis();
+        
+        profile.setSearch(searcher.getQuery(), hits, searcher.getSegmentCount());
+        
+        ScoreDoc[] scoreDocs = hits.scoreDocs;
+        if (collapse)
+        {
+            scoreDocs = searcher.collapseDuplicates(hits.scoreDocs);
+        }
+        
+        Cluster clus = new Cluster();
+        clus.setDeadline(deadline);
+        List<List<Integer>> clusters = null;
+        
+        FlightRecorderEvents.Clustering clusteringEvent = null;
+        if (FlightRecorderEvents.ENABLED)
+        {
+            clusteringEvent = new FlightRecorderEvents.Clustering();
+            clusteringEvent.begin();
+        }
+        
+        if (cluster && !"none".equalsIgnoreCase(refine))
+        {
+            long remaining = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            ClusterRefinement refinement = new ClusterRefinement(
+                ClusterRefinement.Strategy.valueOf(refine.toUpperCase()), Math.min(budget, remaining));
+            clusters = clus.getDocumentsClustering(scoreDocs, results, refinement, minClusters, maxClusters);
+        }
+        else if (cluster)
+        {
+            List<List<Integer>> clusteringResult = clus.getDocumentsClustering(scoreDocs, results);
+            clusters = clusteringResult.stream().collect(Collectors.toList());
+        }
+        profile.setClusteringRows(clus.getEvaluatedRows());
+        
+        if (cluster && clusteringEvent != null)
+        {
+            clusteringEvent.query = searchQuery;
+            clusteringEvent.documents = scoreDocs.length;
+            clusteringEvent.rows = clus.getEvaluatedRows();
+            clusteringEvent.clusters = clusters != null ? clusters.size() : 0;
+            clusteringEvent.refinement = refine;
+            clusteringEvent.partial = clus.isPartial();
+            clusteringEvent.commit();
+        }
+        
+        FlightRecorderEvents.StoredFieldsFetch fetchEvent = null;
+        if (FlightRecorderEvents.ENABLED)
+        {
+            fetchEvent = new FlightRecorderEvents.StoredFieldsFetch();
+            fetchEvent.begin();
+        }
+        long fetchStartTime = System.nanoTime();
+        String[] paths = new String[scoreDocs.length];
+        long fetchCharacters = 0;
+        for (int i = 0; i < scoreDocs.length; i++)
+        {
+            paths[i] = searcher.getFilePath(scoreDocs[i]);
+            fetchCharacters += paths[i].length();
+        }
+        Metrics.recordPhase(Metrics.FETCH, fetchStartTime);
+        if (fetchEvent != null)
+        {
+            fetchEvent.query = searchQuery;
+            fetchEvent.documents = scoreDocs.length;
+            fetchEvent.characters = fetchCharacters;
+            fetchEvent.commit();
+        }
+        
+        SearchResult result = new SearchResult(scoreDocs, paths);
+        boolean highlightPartial = false;
+        
+        if (snippets > 0 && scoreDocs.length > 0)
+        {
+            FlightRecorderEvents.Highlighting highlightEvent = null;
+            if (FlightRecorderEvents.ENABLED)
+            {
+                highlightEvent = new FlightRecorderEvents.Highlighting();
+                highlightEvent.begin();
+            }
+            long highlightStartTime = System.nanoTime();
+            SnippetHighlighter highlighter = new SnippetHighlighter(searcher.getQuery(), searcher.getReader());
+            String[][] documentSnippets = new String[scoreDocs.length][];
+            int highlightedDocuments = 0;
+            int highlightedSnippets = 0;
+            long highlightedCharacters = 0;
+            for (int i = 0; i < scoreDocs.length; i++)
+            {
+                if (highlightPartial || System.nanoTime() - deadline > 0)
+                {
+                    highlightPartial = true;
+                    documentSnippets[i] = new String[0];
+                    continue;
+                }
                 
-                JSONObject sil = new JSONObject();
-                sil.put("type", "silhouette");
-                sil.put("value", silResult);
-                tests.add(sil);
+                documentSnippets[i] = highlighter.getSnippets(scoreDocs[i].doc, snippets, snippetSize);
+                highlightedDocuments++;
+                highlightedSnippets += documentSnippets[i].length;
+                for (String snippet : documentSnippets[i])
+                {
+                    highlightedCharacters += snippet.length();
+                }
+            }
+            result.setSnippets(documentSnippets);
+            Metrics.recordPhase(Metrics.HIGHLIGHT, highlightStartTime);
+            if (highlightEvent != null)
+            {
+                highlightEvent.query = searchQuery;
+                highlightEvent.documents = highlightedDocuments;
+                highlightEvent.snippets = highlightedSnippets;
+                highlightEvent.characters = highlightedCharacters;
+                highlightEvent.commit();
+            }
+        }
+        
+        if (cluster)
+        {
+            String[] clusterLabels = new String[scoreDocs.length];
+            for (int i = 0; i < scoreDocs.length; i++)
+            {
+                clusterLabels[i] = clus.getDocumentCluster(clusters, i);
             }
             
-            json.put("documents", docs);
-            json.put("tests", tests);
-            json.put("time", (endTime - startTime));
+            FlightRecorderEvents.Evaluation evaluationEvent = null;
+            if (FlightRecorderEvents.ENABLED)
+            {
+                evaluationEvent = new FlightRecorderEvents.Evaluation();
+                evaluationEvent.begin();
+            }
+            long evaluateStartTime = System.nanoTime();
+            InternalEvaluation internalEval = new InternalEvaluation(clusters, scoreDocs);
             
-            return Response.status(200).entity(json.toJSONString()).build();
+            result.setClusterLabels(clusterLabels);
+            result.setTests(internalEval.getSSBResult(), internalEval.getSSWResult(),
+                internalEval.getSilhouetteResult());
+            Metrics.recordPhase(Metrics.EVALUATE, evaluateStartTime);
+            if (evaluationEvent != null)
+            {
+                evaluationEvent.query = searchQuery;
+                evaluationEvent.documents = scoreDocs.length;
+                evaluationEvent.clusters = clusters != null ? clusters.size() : 0;
+                evaluationEvent.commit();
+            }
         }
-        catch (IOException | ParseException ex)
+        
+        if (collapse)
         {
+            result.setCollapsed(hits.scoreDocs.length - scoreDocs.length);
+        }
+        
+        result.setRefinementResult(clus.getRefinementResult());
+        result.setPartial(searcher.isPartial() || clus.isPartial() || highlightPartial);
+        result.setTime(endTime - startTime);
+        
+        return result;
+    }
+    
+    /**
+     * Searches the news related with an indexed document, using the most interesting terms from the term
+     * vector of the document
+     * @param doc Document id from a previous search
+     * @param path File path from a previous search, used when the document id is not given
+     * @param results Max of documents returned in the search
+     * @return A JSON output with recovered documents and elapsed time to search them
+     */
+    @GET
+    @Path("/related/{results}")
+    @Produces("application/json")
+    @SuppressWarnings({ "unchecked" })
+    public Response getRelatedDocuments(@QueryParam("doc") @DefaultValue("-1") int doc,
+        @QueryParam("path") String path, @PathParam("results") int results)
+    {
+        String indexPath = getPath(PathsConstants.INDEX_PATH_PROPERTY, PathsConstants.INDEX_PATH);
+        long requestStartTime = System.nanoTime();
+        
+        try
+        {
+            String output = SearchExecutor.getInstance().execute(SearchExecutor.Endpoint.SEARCH, () ->
+            {
+                try (Searcher searcher = new Searcher(indexPath))
+                {
+                    long startTime = System.currentTimeMillis();
+                    
+                    int docId = doc;
+                    if (docId < 0 && path != null)
+                    {
+                        docId = searcher.getDocumentId(path);
+                    }
+                    
+                    TopDocs hits = searcher.searchRelated(docId, results);
+                    long endTime = System.currentTimeMillis();
+                    
+                    JSONArray docs = new JSONArray();
+                    
+                    for (ScoreDoc scoreDoc : hits.scoreDocs)
+                    {
+                        JSONObject d = new JSONObject();
+                        d.put("id", scoreDoc.doc);
+                        d.put("path", searcher.getFilePath(scoreDoc));
+                        d.put("score", scoreDoc.score);
+                        
+                        docs.add(d);
+                    }
+                    
+                    JSONObject json = new JSONObject();
+                    json.put("documents", docs);
+                    json.put("time", (endTime - startTime));
+                    
+                    return json.toJSONString();
+                }
+            });
+            
+            return Response.status(200).entity(output).build();
+        }
+        catch (OverloadedException ex)
+        {
+            return getOverloadedResponse(ex);
+        }
+        catch (Exception ex)
+        {
+            Metrics.recordError("related");
+            
             JSONObject json = new JSONObject();
             json.put("status", "Exception");
             json.put("response", ex.getMessage());
             
             return Response.status(200).entity(json.toJSONString()).build();
         }
-        catch (Exception ex)
+        finally
+        {
+            Metrics.recordRequest("related", requestStartTime);
+        }
+    }
+    
+    /**
+     * Completes a query prefix with the most frequent terms of the news contents and with the news titles,
+     * from the suggesters built after the last index creation. While the suggesters are loaded or built in
+     * the background the lists are empty and the output is marked as not ready
+     * @param prefix Prefix typed by the user
+     * @param count Max number of suggestions of each kind
+     * @return A JSON output with the suggested terms and titles, if the suggesters are ready, and the elapsed
+     * time in microseconds
+     */
+    @GET
+    @Path("/suggest/{prefix}")
+    @Produces("application/json")
+    @SuppressWarnings({ "unchecked" })
+    public Response getSuggestions(@PathParam("prefix") String prefix,
+        @QueryParam("count") @DefaultValue("10") int count)
+    {
+        String indexPath = getPath(PathsConstants.INDEX_PATH_PROPERTY, PathsConstants.INDEX_PATH);
+        long requestStartTime = System.nanoTime();
+        
+        try
+        {
+            Suggester suggester = Suggester.getInstance(indexPath);
+            
+            long startTime = System.nanoTime();
+            List<Lookup.LookupResult> terms = Collections.emptyList();
+            List<Lookup.LookupResult> titles = Collections.emptyList();
+            if (suggester != null)
+            {
+                terms = suggester.suggestTerms(prefix, count);
+                titles = suggester.suggestTitles(prefix, count);
+            }
+            long endTime = System.nanoTime();
+            
+            JSONObject json = new JSONObject();
+            json.put("terms", getSuggestions(terms));
+            json.put("titles", getSuggestions(titles));
+            json.put("ready", suggester != null);
+            json.put("time", TimeUnit.NANOSECONDS.toMicros(endTime - startTime));
+            
+            return Response.status(200).entity(json.toJSONString()).build();
+        }
+        catch (IOException ex)
         {
+            Metrics.recordError("suggest");
+            
             JSONObject json = new JSONObject();
             json.put("status", "Exception");
             json.put("response", ex.getMessage());
             
             return Response.status(200).entity(json.toJSONString()).build();
         }
+        finally
+        {
+            Metrics.recordRequest("suggest", requestStartTime);
+        }
+    }
+    
+    /**
+     * Converts the suggestions into a JSON array
+     * @param suggestions Suggestions with their weights
+     * @return JSON array with the text and the weight of each suggestion
+     */
+    @SuppressWarnings({ "unchecked" })
+    private JSONArray getSuggestions(List<Lookup.LookupResult> suggestions)
+    {
+        JSONArray array = new JSONArray();
+        for (Lookup.LookupResult suggestion : suggestions)
+        {
+            JSONObject json = new JSONObject();
+            json.put("text", suggestion.key.toString());
+            json.put("weight", suggestion.value);
+            array.add(json);
+        }
+        
+        return array;
     }
     
     /**
@@ -157,13 +824,15 @@ public class Services
     @SuppressWarnings({ "unchecked" })
     public Response extractNews()
     {
+        long requestStartTime = System.nanoTime();
+        
         try
         {
             ExtractReutersNews extract = new ExtractReutersNews();
             
             long startTime = System.currentTimeMillis();
-            extract.extractNewsFromSgm(context.getRealPath(PathsConstants.SGM_PATH),
-                context.getRealPath(PathsConstants.DATA_PATH));
+            extract.extractNewsFromSgm(getPath(PathsConstants.SGM_PATH_PROPERTY, PathsConstants.SGM_PATH),
+                getPath(PathsConstants.DATA_PATH_PROPERTY, PathsConstants.DATA_PATH));
             long endTime = System.currentTimeMillis();
             
             JSONObject json = new JSONObject();
@@ -175,17 +844,25 @@ public class Services
         }
         catch (IOException ex)
         {
+            Metrics.recordError("extract");
+            
             JSONObject json = new JSONObject();
             json.put("status", "Exception");
             json.put("response", ex.getMessage());
             
             return Response.status(200).entity(json.toJSONString()).build();
         }
+        finally
+        {
+            Metrics.recordRequest("extract", requestStartTime);
+        }
     }
     
     /**
-     * Indexes the TXT documents for searches 
-     * @return A JSON output with the process result
+     * Indexes the TXT documents for searches, builds the near-duplicate groups of the new commit, and then
+     * reopens the shared searcher and builds the query suggesters. The index of a replica is read-only,
+     * because it is copied from the primary
+     * @return A JSON output with the process result, with status 409 in a replica
      */
     @GET
     @Path("/index")
@@ -193,32 +870,348 @@ public class Services
     @SuppressWarnings({ "unchecked" })
     public Response indexNews()
     {
+        String indexPath = getPath(PathsConstants.INDEX_PATH_PROPERTY, PathsConstants.INDEX_PATH);
+        String dataPath = getPath(PathsConstants.DATA_PATH_PROPERTY, PathsConstants.DATA_PATH);
+        long requestStartTime = System.nanoTime();
+        
+        if (ReplicationConstants.isReplica())
+        {
+            JSONObject json = new JSONObject();
+            json.put("status", "Exception");
+            json.put("response", "The index of a replica is read-only, index the news in the primary");
+            
+            return Response.status(409).entity(json.toJSONString()).build();
+        }
+        
         try
         {
-            Indexer indexer = new Indexer(context.getRealPath(PathsConstants.INDEX_PATH));
+            String output = SearchExecutor.getInstance().execute(SearchExecutor.Endpoint.INDEX, () ->
+            {
+                Indexer indexer = new Indexer(indexPath);
+                
+                long startTime = System.currentTimeMillis();
+                int numIndexed = indexer.createIndex(dataPath, new TextFileFilter());
+                long endTime = System.currentTimeMillis();
+                
+                indexer.close();
+                LshIndex.build(indexPath);
+                SharedSearcher.refresh(indexPath);
+                Suggester.build(indexPath);
+                
+                JSONObject json = new JSONObject();
+                json.put("status", "Success");
+                json.put("response", "Files indexed Successfully");
+                json.put("indexed", numIndexed);
+                json.put("time", (endTime - startTime));
+                
+                return json.toJSONString();
+            });
             
-            long startTime = System.currentTimeMillis();
-            int numIndexed = indexer.createIndex(context.getRealPath(PathsConstants.DATA_PATH),
-                new TextFileFilter());
-            long endTime = System.currentTimeMillis();
+            return Response.status(200).entity(output).build();
+        }
+        catch (OverloadedException ex)
+        {
+            return getOverloadedResponse(ex);
+        }
+        catch (Exception ex)
+        {
+            Metrics.recordError("index");
             
-            indexer.close();
+            JSONObject json = new JSONObject();
+            json.put("status", "Exception");
+            json.put("response", ex.getMessage());
             
+            return Response.status(200).entity(json.toJSONString()).build();
+        }
+        finally
+        {
+            Metrics.recordRequest("index", requestStartTime);
+        }
+    }
+    
+    /**
+     * Gets the telemetry of the last index creation, while it runs or after it finishes: documents per second
+     * over time, flush sizes, merge sizes and times, and the time the indexing was stalled by flushes or merges
+     * @return A JSON output with the indexing telemetry
+     */
+    @GET
+    @Path("/index/status")
+    @Produces("application/json")
+    @SuppressWarnings({ "unchecked" })
+    public Response getIndexStatus()
+    {
+        IndexingTelemetry telemetry = IndexingTelemetry.getLast();
+        if (telemetry == null)
+        {
             JSONObject json = new JSONObject();
-            json.put("status", "Success");
-            json.put("response", "Files indexed Successfully");
-            json.put("indexed", numIndexed);
-            json.put("time", (endTime - startTime));
+            json.put("status", "Exception");
+            json.put("response", "No index has been created since the service started");
             
             return Response.status(200).entity(json.toJSONString()).build();
         }
+        
+        return JsonStreams.stream(telemetry::writeJson, null).type("application/json").build();
+    }
+    
+    /**
+     * Gets the state of the search executor: queue depth, active threads, and requests in flight and
+     * rejected for each endpoint, and the number of searches written and dropped by the slow query log
+     * @return A JSON output with the executor state
+     */
+    @GET
+    @Path("/status")
+    @Produces("application/json")
+    @SuppressWarnings({ "unchecked" })
+    public Response getStatus()
+    {
+        SearchExecutor executor = SearchExecutor.getInstance();
+        
+        JSONObject json = new JSONObject();
+        json.put("threads", executor.getThreads());
+        json.put("activeThreads", executor.getActiveThreads());
+        json.put("queueDepth", executor.getQueueDepth());
+        json.put("queueCapacity", executor.getQueueCapacity());
+        json.put("queueRejections", executor.getQueueRejections());
+        json.put("completed", executor.getCompletedTasks());
+        
+        JSONObject endpoints = new JSONObject();
+        for (SearchExecutor.Endpoint endpoint : SearchExecutor.Endpoint.values())
+        {
+            JSONObject e = new JSONObject();
+            e.put("limit", executor.getLimit(endpoint));
+            e.put("inFlight", executor.getInFlight(endpoint));
+            e.put("rejections", executor.getRejections(endpoint));
+            endpoints.put(endpoint.name().toLowerCase(), e);
+        }
+        json.put("endpoints", endpoints);
+        
+        JSONObject slowQueries = new JSONObject();
+        slowQueries.put("logged", SlowQueryLog.getLogged());
+        slowQueries.put("dropped", SlowQueryLog.getDropped());
+        json.put("slowQueries", slowQueries);
+        
+        return Response.status(200).entity(json.toJSONString()).build();
+    }
+    
+    /**
+     * Gets the replication state of the node. A primary answers the last published commit, and a replica
+     * answers its commit, its lag behind the primary, the delay of its last update and its failed checks
+     * @return A JSON output with the replication state
+     */
+    @GET
+    @Path("/replication")
+    @Produces("application/json")
+    @SuppressWarnings({ "unchecked" })
+    public Response getReplication()
+    {
+        String indexPath = getPath(PathsConstants.INDEX_PATH_PROPERTY, PathsConstants.INDEX_PATH);
+        
+        JSONObject json = new JSONObject();
+        json.put("role", ReplicationConstants.getRole());
+        
+        try
+        {
+            if (ReplicationConstants.isPrimary())
+            {
+                IndexPublisher publisher = IndexPublisher.getInstance(indexPath);
+                json.put("generation", publisher.getGeneration());
+                json.put("publishTime", publisher.getPublishTime());
+                json.put("publishedCommits", publisher.getPublishedCommits());
+            }
+            else if (IndexReplica.getInstance() != null)
+            {
+                IndexReplica replica = IndexReplica.getInstance();
+                json.put("primary", replica.getPrimaryUrl());
+                json.put("generation", replica.getGeneration());
+                json.put("lag", replica.getLag());
+                json.put("lastUpdateTime", replica.getLastUpdateTime());
+                json.put("lastUpdateDelay", replica.getLastUpdateDelay());
+                json.put("checks", replica.getChecks());
+                json.put("updates", replica.getUpdates());
+                json.put("errors", replica.getErrors());
+                json.put("lastError", replica.getLastError());
+            }
+        }
         catch (IOException ex)
         {
-            JSONObject json = new JSONObject();
             json.put("status", "Exception");
             json.put("response", ex.getMessage());
+        }
+        
+        return Response.status(200).entity(json.toJSONString()).build();
+    }
+    
+    /**
+     * Indicates if the service is ready to receive searches, which is after the warm-up of the standalone
+     * server finishes and, in a replica, after the first index commit is copied from the primary
+     * @return A JSON output with the readiness and the warm-up searches, with status 503 until the service is
+     * ready
+     */
+    @GET
+    @Path("/ready")
+    @Produces("application/json")
+    @SuppressWarnings({ "unchecked" })
+    public Response getReadiness()
+    {
+        IndexReplica replica = IndexReplica.getInstance();
+        boolean replicated;
+        try
+        {
+            replicated = replica == null || replica.hasIndex();
+        }
+        catch (IOException ex)
+        {
+            replicated = false;
+        }
+        
+        boolean ready = WarmUp.isReady() && replicated;
+        
+        JSONObject json = new JSONObject();
+        json.put("status", ready ? "Ready" : replicated ? "WarmingUp" : "Replicating");
+        json.put("warmUpSearches", WarmUp.getSearches());
+        json.put("warmUpErrors", WarmUp.getErrors());
+        
+        return Response.status(ready ? 200 : 503).entity(json.toJSONString()).build();
+    }
+    
+    /**
+     * Gets the latency percentiles for each search phase and the latency, throughput and errors for each
+     * endpoint. The search output is streamed, so the serialization time is only in the serialize phase
+     * @param format Output format: json or text
+     * @return A JSON or text output with the metrics
+     */
+    @GET
+    @Path("/metrics")
+    @Produces({ "application/json", "text/plain" })
+    public Response getMetrics(@QueryParam("format") @DefaultValue("json") String format)
+    {
+        if ("text".equalsIgnoreCase(format))
+        {
+            return Response.status(200).type("text/plain").entity(Metrics.getText()).build();
+        }
+        
+        return JsonStreams.stream(Metrics::writeJson, null).type("application/json").build();
+    }
+    
+
+    /**
+     * Gets the filters and order of a search from the request parameters. The dates are days in UTC, and the
+     * max date includes the whole day
+     * @param from Min news date, like 1987-02-26, or null to not filter from a date
+     * @param to Max news date, like 1987-03-31, or null to not filter to a date
+     * @param topics Topics of the news, or an empty list to not filter by topic
+     * @param places Places of the news, or an empty list to not filter by place
+     * @param sort Order of the news: score or date
+     * @return Filters and order of the search
+     * @throws IllegalArgumentException Throws an exception if a date or the order is not valid
+     */
+    private static SearchFilter getFilter(String from, String to, List<String> topics, List<String> places,
+        String sort)
+    {
+        if (!"score".equalsIgnoreCase(sort) && !"date".equalsIgnoreCase(sort))
+        {
+            throw new IllegalArgumentException("The sort must be score or date");
+        }
+        
+        try
+        {
+            long fromDate = from == null || from.isEmpty() ? Long.MIN_VALUE
+                : LocalDate.parse(from).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            long toDate = to == null || to.isEmpty() ? Long.MAX_VALUE
+                : LocalDate.parse(to).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() - 1;
             
-            return Response.status(200).entity(json.toJSONString()).build();
+            return new SearchFilter(fromDate, toDate, topics, places, "date".equalsIgnoreCase(sort));
+        }
+        catch (DateTimeParseException ex)
+        {
+            throw new IllegalArgumentException("The dates must be like 1987-02-26: " + ex.getParsedString());
+        }
+    }
+    
+    /**
+     * Gets a weak entity tag for a search from the index commit generation and the request parameters, so it
+     * changes when the index changes or when the request asks for a different output. The tag is weak because
+     * the output has the elapsed time, which is different for each search
+     * @param generation Index commit generation
+     * @param parameters Request parameters that change the output
+     * @return Entity tag for the search output
+     */
+    private static EntityTag getEntityTag(long generation, Object... parameters)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (Object parameter : parameters)
+            {
+                digest.update(String.valueOf(parameter).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            
+            StringBuilder tag = new StringBuilder(Long.toHexString(generation)).append('-');
+            for (byte b : Arrays.copyOf(digest.digest(), 8))
+            {
+                tag.append(String.format("%02x", b));
+            }
+            
+            return new EntityTag(tag.toString(), true);
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex);
         }
     }
+    
+    /**
+     * Gets the cache control of the search outputs, which can be cached for the max age configured with the
+     * system property ir.cache.maxAge in seconds and then revalidated with their entity tag
+     * @return Cache control for the search outputs
+     */
+    private static CacheControl getCacheControl()
+    {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(CACHE_MAX_AGE);
+        
+        return cacheControl;
+    }
+    
+    /**
+     * Gets a path from its system property, set by the standalone server, or from the web application
+     * @param property System property with the path
+     * @param path Path in the web application
+     * @return Path in the file system
+     */
+    private String getPath(String property, String path)
+    {
+        String configuredPath = System.getProperty(property);
+        
+        return configuredPath != null ? configuredPath : context.getRealPath(path);
+    }
+
+    /**
+     * Gets the time budget for a search, using the default budget when it is not given and limiting it to
+     * the max budget
+     * @param timeout Time budget asked by the client in milliseconds, or 0 for the default budget
+     * @return Time budget in milliseconds
+     */
+    private static long getTimeout(long timeout)
+    {
+        return timeout > 0 ? Math.min(timeout, MAX_TIMEOUT) : DEFAULT_TIMEOUT;
+    }
+    
+    /**
+     * Builds the response for a request rejected because the service is overloaded, asking the client to
+     * retry later
+     * @param ex Rejection exception
+     * @return A JSON output with the rejection reason
+     */
+    @SuppressWarnings({ "unchecked" })
+    private Response getOverloadedResponse(OverloadedException ex)
+    {
+        JSONObject json = new JSONObject();
+        json.put("status", "Rejected");
+        json.put("response", ex.getMessage());
+        
+        return Response.status(ex.getStatus()).header("Retry-After", ex.getRetryAfter())
+            .entity(json.toJSONString()).build();
+    }
 }
@@ -0,0 +1,200 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * Shares one index reader for each index directory between all the searches, instead of opening a reader
+ * for each search. The reader is reopened only when the index changes
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class SharedSearcher
+{
+    /**
+     * Shared searchers for each index directory
+     */
+    private static final Map<String, SharedSearcher> INSTANCES = new ConcurrentHashMap<>();
+    
+    /**
+     * Searcher manager that reopens the reader and counts its references
+     */
+    private SearcherManager manager;
+    
+    /**
+     * Index directory
+     */
+    private Path indexDir;
+    
+    /**
+     * Generation of the index commit read by the current reader
+     */
+    private volatile long generation;
+    
+    /**
+     * Time when the index commit read by the current reader was written, in milliseconds
+     */
+    private volatile long lastModified;
+    
+    /**
+     * Opens the reader for the index directory, and keeps the generation and time of its commit updated each
+     * time the reader is reopened
+     * @param indexDirPath Path from the index files
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    private SharedSearcher(String indexDirPath) throws IOException
+    {
+        indexDir = Paths.get(indexDirPath);
+        manager = new SearcherManager(FSDirectory.open(indexDir), null);
+        updateCommit();
+        
+        manager.addListener(new ReferenceManager.RefreshListener()
+        {
+            @Override
+            public void beforeRefresh()
+            {
+            }
+            
+            @Override
+            public void afterRefresh(boolean didRefresh) throws IOException
+            {
+                if (didRefresh)
+                {
+                    updateCommit();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Reads the generation and time of the index commit of the current reader
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    private void updateCommit() throws IOException
+    {
+        IndexSearcher indexSearcher = manager.acquire();
+        try
+        {
+            IndexCommit commit = ((DirectoryReader) indexSearcher.getIndexReader()).getIndexCommit();
+            
+            Path segmentsFile = indexDir.resolve(commit.getSegmentsFileName());
+            
+            lastModified = Files.getLastModifiedTime(segmentsFile).toMillis();
+            generation = commit.getGeneration();
+        }
+        finally
+        {
+            manager.release(indexSearcher);
+        }
+    }
+    
+    /**
+     * Gets the shared searcher for an index directory, opening it in the first call
+     * @param indexDirPath Path from the index files
+     * @return Shared searcher for the index directory
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public static SharedSearcher getInstance(String indexDirPath) throws IOException
+    {
+        SharedSearcher instance = INSTANCES.get(indexDirPath);
+        if (instance != null)
+        {
+            return instance;
+        }
+        
+        synchronized (INSTANCES)
+        {
+            instance = INSTANCES.get(indexDirPath);
+            if (instance == null)
+            {
+                instance = new SharedSearcher(indexDirPath);
+                INSTANCES.put(indexDirPath, instance);
+            }
+        }
+        
+        return instance;
+    }
+    
+    /**
+     * Acquires the current index searcher. It must be released after the search
+     * @return Current index searcher
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public IndexSearcher acquire() throws IOException
+    {
+        return manager.acquire();
+    }
+    
+    /**
+     * Releases an index searcher acquired from this shared searcher
+     * @param indexSearcher Acquired index searcher
+     * @throws IOException Throws an exception when the reader cannot be closed
+     */
+    public void release(IndexSearcher indexSearcher) throws IOException
+    {
+        manager.release(indexSearcher);
+    }
+    
+    /**
+     * Reopens the reader if the index has changed. The searches that already acquired the previous reader
+     * keep using it until they release it
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public void refresh() throws IOException
+    {
+        manager.maybeRefreshBlocking();
+    }
+    
+    /**
+     * Gets the generation of the index commit read by the current reader, which changes each time the index
+     * changes
+     * @return Index commit generation
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+    
+    /**
+     * Gets the time when the index commit read by the current reader was written
+     * @return Commit time in milliseconds
+     */
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+    
+    /**
+     * Adds a listener called each time the reader is reopened
+     * @param listener Refresh listener
+     */
+    public void addRefreshListener(ReferenceManager.RefreshListener listener)
+    {
+        manager.addListener(listener);
+    }
+    
+    /**
+     * Reopens the shared searcher for an index directory if it was already opened
+     * @param indexDirPath Path from the index files
+     * @throws IOException Throws an exception when there is a problem in the index directory
+     */
+    public static void refresh(String indexDirPath) throws IOException
+    {
+        SharedSearcher instance = INSTANCES.get(indexDirPath);
+        if (instance != null)
+        {
+            instance.refresh();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package edu.co.usbcali.ir.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log of the searches slower than a threshold, with their execution profile. The profiles are queued in a
+ * bounded queue and written by a daemon thread, so a search never waits for the log: when the queue is full
+ * the profile is dropped and counted. The log is configured with the system properties ir.slowQuery.threshold
+ * (milliseconds, a negative value disables the log), ir.slowQuery.explain (top hits explained),
+ * ir.slowQuery.queue and ir.slowQuery.file
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class SlowQueryLog
+{
+    /**
+     * Min elapsed time in nanoseconds of a logged search
+     */
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(
+        Long.getLong("ir.slowQuery.threshold", 500));
+    
+    /**
+     * Number of top hits explained for each logged search
+     */
+    private static final int EXPLAIN_HITS = Integer.getInteger("ir.slowQuery.explain", 3);
+    
+    /**
+     * Max number of profiles waiting to be written
+     */
+    private static final int QUEUE_CAPACITY = Integer.getInteger("ir.slowQuery.queue", 1024);
+    
+    /**
+     * Log file path
+     */
+    private static final String FILE = System.getProperty("ir.slowQuery.file",
+        Paths.get(System.getProperty("java.io.tmpdir"), "ir-slow-queries.log").toString());
+    
+    /**
+     * Profiles waiting to be written
+     */
+    private static final BlockingQueue<QueryProfile> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    
+    /**
+     * Number of written profiles
+     */
+    private static final AtomicLong LOGGED = new AtomicLong();
+    
+    /**
+     * Number of profiles dropped because the queue was full
+     */
+    private static final AtomicLong DROPPED = new AtomicLong();
+    
+    static
+    {
+        if (THRESHOLD >= 0)
+        {
+            Thread writer = new Thread(SlowQueryLog::write, "ir-slow-query-log");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+    
+    /**
+     * Indicates if a search is slow enough to be logged
+     * @param elapsedTime Elapsed nanoseconds of the search
+     * @return True if the search has to be logged
+     */
+    public static boolean isSlow(long elapsedTime)
+    {
+        return THRESHOLD >= 0 && elapsedTime >= THRESHOLD;
+    }
+    
+    /**
+     * Gets the number of top hits explained for each logged search
+     * @return Number of top hits
+     */
+    public static int getExplainHits()
+    {
+        return EXPLAIN_HITS;
+    }
+    
+    /**
+     * Queues an ended profile to be written without waiting. The profile is dropped if the queue is full
+     * @param profile Profile of a slow search
+     */
+    public static void log(QueryProfile profile)
+    {
+        if (!QUEUE.offer(profile))
+        {
+            profile.release();
+            DROPPED.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Gets the number of written profiles
+     * @return Written profiles
+     */
+    public static long getLogged()
+    {
+        return LOGGED.get();
+    }
+    
+    /**
+     * Gets the number of profiles dropped because the queue was full
+     * @return Dropped profiles
+     */
+    public static long getDropped()
+    {
+        return DROPPED.get();
+    }
+    
+    /**
+     * Writes the queued profiles to the log file, flushing it when the queue is empty
+     */
+    private static void write()
+    {
+        while (true)
+        {
+            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+            {
+                while (true)
+                {
+                    QueryProfile profile = QUEUE.poll();
+                    if (profile == null)
+                    {
+                        writer.flush();
+                        profile = QUEUE.take();
+                    }
+                    
+                    writer.write(Instant.now() + " " + profile.getText());
+                    LOGGED.incrementAndGet();
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+            catch (IOException ex)
+            {
+                // The file cannot be written now, so the next profiles are written when it is reopened
+                try
+                {
+                    Thread.sleep(1000);
+                }
+                catch (InterruptedException iex)
+                {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.highlight.Encoder;
+import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
+import org.apache.lucene.search.vectorhighlight.FastVectorHighlighter;
+import org.apache.lucene.search.vectorhighlight.FieldQuery;
+import org.apache.lucene.search.vectorhighlight.FragListBuilder;
+import org.apache.lucene.search.vectorhighlight.FragmentsBuilder;
+import org.apache.lucene.search.vectorhighlight.ScoreOrderFragmentsBuilder;
+import org.apache.lucene.search.vectorhighlight.SimpleFragListBuilder;
+
+import edu.co.usbcali.ir.constants.LuceneConstants;
+
+/**
+ * Builds the highlighted snippets of the recovered news with the FastVectorHighlighter, from the positions
+ * and offsets of the term vectors stored by the {@link Indexer}, so the content is never analyzed again and
+ * the TXT files are not read. The best fragments of each news are returned by score, with the matched terms
+ * between &lt;b&gt; tags and the rest of the text escaped as HTML
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class SnippetHighlighter
+{
+    /**
+     * Max number of snippets for each news
+     */
+    public static final int MAX_SNIPPETS = Integer.getInteger("ir.snippets.max", 5);
+    
+    /**
+     * Min size of a snippet in characters, the min fragment size of the SimpleFragListBuilder
+     */
+    public static final int MIN_SNIPPET_SIZE = 18;
+    
+    /**
+     * Max size of a snippet in characters
+     */
+    public static final int MAX_SNIPPET_SIZE = Integer.getInteger("ir.snippets.maxSize", 500);
+    
+    /**
+     * Tags before the matched terms
+     */
+    private static final String[] PRE_TAGS = { "<b>" };
+    
+    /**
+     * Tags after the matched terms
+     */
+    private static final String[] POST_TAGS = { "</b>" };
+    
+    /**
+     * Highlighter with phrase highlighting and matching only the terms of the content field
+     */
+    private static final FastVectorHighlighter HIGHLIGHTER = new FastVectorHighlighter(true, true);
+    
+    /**
+     * Builder of the fragments around the matched terms
+     */
+    private FragListBuilder fragListBuilder = new SimpleFragListBuilder();
+    
+    /**
+     * Builder of the snippets from the best fragments by score
+     */
+    private FragmentsBuilder fragmentsBuilder = new ScoreOrderFragmentsBuilder(PRE_TAGS, POST_TAGS);
+    
+    /**
+     * Encoder of the text around the matched terms
+     */
+    private Encoder encoder = new SimpleHTMLEncoder();
+    
+    /**
+     * Terms and phrases of the query, rewritten once for all the news of a search
+     */
+    private FieldQuery fieldQuery;
+    
+    /**
+     * Index reader with the term vectors
+     */
+    private IndexReader reader;
+    
+    /**
+     * Initializes the highlighter with the query of a search, expanding its wildcard, prefix and fuzzy terms
+     * against the index
+     * @param query Parsed query of the search
+     * @param reader Index reader used in the search
+     * @throws IOException Throws an exception when the query terms cannot be expanded
+     */
+    public SnippetHighlighter(Query query, IndexReader reader) throws IOException
+    {
+        this.fieldQuery = HIGHLIGHTER.getFieldQuery(query, reader);
+        this.reader = reader;
+    }
+    
+    /**
+     * Gets the best snippets of a news
+     * @param doc Document id of the news
+     * @param count Max number of snippets, up to MAX_SNIPPETS
+     * @param size Size of each snippet in characters, between MIN_SNIPPET_SIZE and MAX_SNIPPET_SIZE
+     * @return Snippets by score, empty if no query term is in the news
+     * @throws IOException Throws an exception when the term vector or the content cannot be read
+     */
+    public String[] getSnippets(int doc, int count, int size) throws IOException
+    {
+        String[] snippets = HIGHLIGHTER.getBestFragments(fieldQuery, reader, doc, LuceneConstants.CONTENTS,
+            Math.max(MIN_SNIPPET_SIZE, Math.min(size, MAX_SNIPPET_SIZE)), Math.min(count, MAX_SNIPPETS),
+            fragListBuilder, fragmentsBuilder, PRE_TAGS, POST_TAGS, encoder);
+        
+        return snippets != null ? snippets : new String[0];
+    }
+}
@@ -0,0 +1,208 @@
+package edu.co.usbcali.ir.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.sun.jersey.api.core.PackagesResourceConfig;
+import com.sun.jersey.spi.container.servlet.ServletContainer;
+
+import edu.co.usbcali.ir.constants.PathsConstants;
+import edu.co.usbcali.ir.constants.ReplicationConstants;
+import edu.co.usbcali.ir.processes.WarmUp;
+
+/**
+ * Runs the services in an embedded Jetty server, without a WAR deploy. The SGM, data and index paths are
+ * set with the system properties ir.sgm.path, ir.data.path and ir.index.path, or with a properties file
+ * passed as the first argument, and default to the directories of the web application inside the working
+ * directory. The server port is set with ir.server.port (8080). On startup the server opens the index,
+ * reads the Covering Array and runs the warm-up queries of the file ir.warmup.queries (a set of common
+ * terms by default) ir.warmup.rounds times (3), and /rest/reuters/ready answers 503 until they finish.
+ * The Jetty dependencies are provided, so the WAR does not include them and the server runs with the
+ * compile classpath: mvn compile exec:java. Several servers in one machine make a replicated deploy: a
+ * primary with -Dir.replication.role=primary, which indexes the news, and read-only replicas with another
+ * port and index path, -Dir.replication.role=replica and -Dir.replication.primary=http://localhost:8080
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class StandaloneServer
+{
+    /**
+     * Path of the services in the server, as mapped in web.xml
+     */
+    public static final String SERVICES_PATH = "/rest/*";
+    
+    /**
+     * Embedded server
+     */
+    private Server server;
+    
+    /**
+     * Connector of the embedded server
+     */
+    private ServerConnector connector;
+    
+    /**
+     * Starts the server, warms it and waits until it is stopped
+     * @param args Optional path from a properties file with the server configuration
+     * @throws Exception Throws an exception if the configuration cannot be read or the server cannot start
+     */
+    public static void main(String[] args) throws Exception
+    {
+        configure(args.length > 0 ? args[0] : System.getProperty("ir.config"));
+        
+        StandaloneServer standaloneServer = new StandaloneServer(Integer.getInteger("ir.server.port", 8080));
+        standaloneServer.start();
+        System.out.println("Server started on port " + standaloneServer.getPort());
+        
+        try
+        {
+            standaloneServer.warmUp();
+            System.out.println("Server ready after " + WarmUp.getSearches() + " warm-up searches");
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Server ready without warm-up: " + ex.getMessage());
+        }
+        
+        standaloneServer.join();
+    }
+    
+    /**
+     * Loads the server configuration from a properties file into the system properties, without replacing
+     * the properties already set, and sets the paths that are not configured to the web application
+     * directories inside the working directory
+     * @param configFile Path from the properties file, or null to use only the system properties
+     * @throws IOException Throws an exception if the properties file cannot be read
+     */
+    public static void configure(String configFile) throws IOException
+    {
+        if (configFile != null)
+        {
+            Properties properties = new Properties();
+            try (InputStream stream = Files.newInputStream(Paths.get(configFile)))
+            {
+                properties.load(stream);
+            }
+            
+            for (String name : properties.stringPropertyNames())
+            {
+                if (System.getProperty(name) == null)
+                {
+                    System.setProperty(name, properties.getProperty(name));
+                }
+            }
+        }
+        
+        setDefaultPath(PathsConstants.SGM_PATH_PROPERTY, PathsConstants.SGM_PATH);
+        setDefaultPath(PathsConstants.DATA_PATH_PROPERTY, PathsConstants.DATA_PATH);
+        setDefaultPath(PathsConstants.INDEX_PATH_PROPERTY, PathsConstants.INDEX_PATH);
+    }
+    
+    /**
+     * Sets a path property to a directory inside the working directory if it is not set
+     * @param property System property with the path
+     * @param path Path in the web application
+     */
+    private static void setDefaultPath(String property, String path)
+    {
+        if (System.getProperty(property) == null)
+        {
+            System.setProperty(property, Paths.get(path.substring(1)).toAbsolutePath().toString());
+        }
+    }
+    
+    /**
+     * Configures the embedded server with the Jersey servlet over the services and the replication servlet,
+     * which starts before the services so a replica copies the index of the primary before the warm-up
+     * @param port Server port, or 0 to use any free port
+     */
+    public StandaloneServer(int port)
+    {
+        server = new Server();
+        connector = new ServerConnector(server);
+        connector.setPort(port);
+        server.addConnector(connector);
+        
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
+        
+        ServletHolder jersey = new ServletHolder(new ServletContainer());
+        jersey.setInitParameter(PackagesResourceConfig.PROPERTY_PACKAGES,
+            Services.class.getPackage().getName());
+        jersey.setInitOrder(1);
+        context.addServlet(jersey, SERVICES_PATH);
+        
+        ServletHolder replication = new ServletHolder(new ReplicationServlet());
+        replication.setInitOrder(0);
+        context.addServlet(replication, ReplicationConstants.SERVLET_PATH);
+        
+        server.setHandler(context);
+    }
+    
+    /**
+     * Starts the server, which is not ready until it is warmed
+     * @throws Exception Throws an exception if the server cannot start
+     */
+    public void start() throws Exception
+    {
+        WarmUp.begin();
+        try
+        {
+            server.start();
+        }
+        catch (Exception ex)
+        {
+            server.stop();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Opens the index, reads the Covering Array and runs the warm-up queries, and then marks the server as
+     * ready
+     * @throws IOException Throws an exception if the warm-up queries, the Covering Array or the index cannot
+     * be read
+     */
+    public void warmUp() throws IOException
+    {
+        String indexPath = System.getProperty(PathsConstants.INDEX_PATH_PROPERTY);
+        String queriesFile = System.getProperty("ir.warmup.queries");
+        
+        WarmUp.run(indexPath, queriesFile, Integer.getInteger("ir.warmup.rounds", 3));
+    }
+    
+    /**
+     * Gets the port where the server listens
+     * @return Server port
+     */
+    public int getPort()
+    {
+        return connector.getLocalPort();
+    }
+    
+    /**
+     * Waits until the server is stopped
+     * @throws InterruptedException Throws an exception if the wait is interrupted
+     */
+    public void join() throws InterruptedException
+    {
+        server.join();
+    }
+    
+    /**
+     * Stops the server
+     * @throws Exception Throws an exception if the server cannot stop
+     */
+    public void stop() throws Exception
+    {
+        server.stop();
+    }
+}
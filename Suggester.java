@@ -0,0 +1,479 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import edu.co.usbcali.ir.constants.LuceneConstants;
+
+/**
+ * Completes query prefixes with the terms of the news contents and with the news titles, using in-memory
+ * FSTs: a weighted FST of the contents terms, weighted by their document frequency, and an analyzing FST of
+ * the titles, weighted by their repetitions. The FSTs are built after each index creation and stored in a
+ * directory next to the index, with the index commit generation, so they are loaded instead of rebuilt while
+ * the index does not change. When they are not loaded, as after a restart, they are loaded or built by a
+ * background thread and the suggestions are empty until they are ready
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class Suggester
+{
+    /**
+     * Suggesters loaded for each index directory
+     */
+    private static final Map<String, Suggester> INSTANCES = new ConcurrentHashMap<>();
+    
+    /**
+     * Index directories whose suggesters are being loaded or built by the background thread
+     */
+    private static final Set<String> LOADING = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Background thread that loads or builds the suggesters that are not loaded
+     */
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "ir-suggest");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Suffix of the directory with the stored suggesters, next to the index directory
+     */
+    private static final String DIRECTORY_SUFFIX = "-suggest";
+    
+    /**
+     * File of the stored contents terms suggester
+     */
+    private static final String TERMS_FILE = "terms.fst";
+    
+    /**
+     * File of the stored titles suggester
+     */
+    private static final String TITLES_FILE = "titles.fst";
+    
+    /**
+     * Min number of documents of a contents term to be suggested, configured with the system property
+     * ir.suggest.minDocFreq
+     */
+    private static final int MIN_DOC_FREQ = Integer.getInteger("ir.suggest.minDocFreq", 2);
+    
+    /**
+     * Suggester of the contents terms
+     */
+    private WFSTCompletionLookup terms;
+    
+    /**
+     * Suggester of the news titles
+     */
+    private AnalyzingSuggester titles;
+    
+    /**
+     * Generation of the index commit from which the suggesters were built
+     */
+    private long generation;
+    
+    /**
+     * Creates empty suggesters
+     * @param tempDir Directory for the temporary files of the build
+     */
+    private Suggester(Directory tempDir)
+    {
+        terms = new WFSTCompletionLookup(tempDir, "suggest-terms");
+        titles = new AnalyzingSuggester(tempDir, "suggest-titles",
+            new StandardAnalyzer(CharArraySet.EMPTY_SET));
+    }
+    
+    /**
+     * Gets the suggester for an index directory without waiting for it. If it is not loaded, the background
+     * thread loads it from its stored files, or builds it if they do not exist or were built from an older
+     * index commit. A failed load is tried again in the next call
+     * @param indexDirPath Path from the index files
+     * @return Suggester for the index directory, or null while it is loaded or built
+     */
+    public static Suggester getInstance(String indexDirPath)
+    {
+        Suggester instance = INSTANCES.get(indexDirPath);
+        if (instance == null && LOADING.add(indexDirPath))
+        {
+            LOADER.execute(() ->
+            {
+                try
+                {
+                    Suggester loaded = load(indexDirPath);
+                    if (loaded == null)
+                    {
+                        loaded = build(indexDirPath);
+                    }
+                    INSTANCES.putIfAbsent(indexDirPath, loaded);
+                }
+                catch (IOException | RuntimeException ex)
+                {
+                    System.err.println("The suggesters of " + indexDirPath + " cannot be loaded: " + ex);
+                }
+                finally
+                {
+                    LOADING.remove(indexDirPath);
+                }
+            });
+        }
+        
+        return instance;
+    }
+    
+    /**
+     * Builds the suggesters from the last commit of an index, stores them and replaces the loaded ones
+     * @param indexDirPath Path from the index files
+     * @return Built suggester
+     * @throws IOException Throws an exception when there is a problem in the index or the suggester directory
+     */
+    public static Suggester build(String indexDirPath) throws IOException
+    {
+        Path suggestDir = getSuggestDir(indexDirPath);
+        Files.createDirectories(suggestDir);
+        
+        try (Directory tempDir = FSDirectory.open(Paths.get(System.getProperty("java.io.tmpdir")));
+            Directory indexDir = FSDirectory.open(Paths.get(indexDirPath));
+            DirectoryReader reader = DirectoryReader.open(indexDir))
+        {
+            Suggester suggester = new Suggester(tempDir);
+            suggester.generation = reader.getIndexCommit().getGeneration();
+            suggester.terms.build(new WeightedInputs(getTermWeights(reader)));
+            suggester.titles.build(new WeightedInputs(getTitleWeights(reader)));
+            
+            store(suggester.terms, suggester.generation, suggestDir.resolve(TERMS_FILE));
+            store(suggester.titles, suggester.generation, suggestDir.resolve(TITLES_FILE));
+            
+            INSTANCES.put(indexDirPath, suggester);
+            return suggester;
+        }
+    }
+    
+    /**
+     * Discards the loaded suggester of an index directory, so the next call to getInstance loads or builds it
+     * again from the last commit in the background
+     * @param indexDirPath Path from the index files
+     */
+    public static void invalidate(String indexDirPath)
+    {
+        INSTANCES.remove(indexDirPath);
+    }
+    
+    /**
+     * Loads the stored suggesters of an index if they were built from its last commit
+     * @param indexDirPath Path from the index files
+     * @return Loaded suggester, or null if the suggesters must be built
+     * @throws IOException Throws an exception when there is a problem in the index or the suggester directory
+     */
+    private static Suggester load(String indexDirPath) throws IOException
+    {
+        Path suggestDir = getSuggestDir(indexDirPath);
+        Path termsFile = suggestDir.resolve(TERMS_FILE);
+        Path titlesFile = suggestDir.resolve(TITLES_FILE);
+        if (!Files.exists(termsFile) || !Files.exists(titlesFile))
+        {
+            return null;
+        }
+        
+        long generation;
+        try (Directory indexDir = FSDirectory.open(Paths.get(indexDirPath)))
+        {
+            generation = SegmentInfos.getLastCommitGeneration(indexDir);
+        }
+        
+        try (Directory tempDir = FSDirectory.open(Paths.get(System.getProperty("java.io.tmpdir"))))
+        {
+            Suggester suggester = new Suggester(tempDir);
+            suggester.generation = generation;
+            
+            boolean loaded = load(suggester.terms, generation, termsFile)
+                && load(suggester.titles, generation, titlesFile);
+            
+            return loaded ? suggester : null;
+        }
+    }
+    
+    /**
+     * Stores a suggester after the index commit generation and a flag that tells if it has entries, because
+     * an empty suggester has no FST to store. The file is written aside and then moved, so a failed store
+     * does not leave a broken file
+     * @param lookup Built suggester
+     * @param generation Index commit generation
+     * @param file File of the stored suggester
+     * @throws IOException Throws an exception if the file cannot be written
+     */
+    private static void store(Lookup lookup, long generation, Path file) throws IOException
+    {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tempFile))
+        {
+            OutputStreamDataOutput output = new OutputStreamDataOutput(stream);
+            output.writeVLong(generation);
+            output.writeByte((byte) (lookup.getCount() > 0 ? 1 : 0));
+            
+            if (lookup.getCount() > 0)
+            {
+                lookup.store(output);
+            }
+        }
+        
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Loads a stored suggester if it was built from an index commit generation
+     * @param lookup Empty suggester
+     * @param generation Index commit generation
+     * @param file File of the stored suggester
+     * @return True if the suggester was loaded, or false if it was built from other generation
+     * @throws IOException Throws an exception if the file cannot be read
+     */
+    private static boolean load(Lookup lookup, long generation, Path file) throws IOException
+    {
+        try (InputStream stream = Files.newInputStream(file))
+        {
+            InputStreamDataInput input = new InputStreamDataInput(stream);
+            if (input.readVLong() != generation)
+            {
+                return false;
+            }
+            
+            return input.readByte() == 0 || lookup.load(input);
+        }
+    }
+    
+    /**
+     * Gets the contents terms that appear in at least the min number of documents, with their document
+     * frequency as weight
+     * @param reader Index reader
+     * @return Weight of each term
+     * @throws IOException Throws an exception if the index cannot be read
+     */
+    private static Map<String, Long> getTermWeights(DirectoryReader reader) throws IOException
+    {
+        Map<String, Long> weights = new HashMap<>();
+        
+        Terms contentsTerms = MultiFields.getTerms(reader, LuceneConstants.CONTENTS);
+        if (contentsTerms != null)
+        {
+            TermsEnum termsEnum = contentsTerms.iterator();
+            BytesRef term;
+            while ((term = termsEnum.next()) != null)
+            {
+                if (termsEnum.docFreq() >= MIN_DOC_FREQ)
+                {
+                    weights.put(term.utf8ToString(), (long) termsEnum.docFreq());
+                }
+            }
+        }
+        
+        return weights;
+    }
+    
+    /**
+     * Gets the titles of the news, with the number of news with the same title as weight
+     * @param reader Index reader
+     * @return Weight of each title
+     * @throws IOException Throws an exception if the index cannot be read
+     */
+    private static Map<String, Long> getTitleWeights(DirectoryReader reader) throws IOException
+    {
+        Map<String, Long> weights = new HashMap<>();
+        Set<String> fields = Collections.singleton(LuceneConstants.TITLE);
+        Bits liveDocs = MultiFields.getLiveDocs(reader);
+        
+        for (int i = 0; i < reader.maxDoc(); i++)
+        {
+            if (liveDocs == null || liveDocs.get(i))
+            {
+                String title = reader.document(i, fields).get(LuceneConstants.TITLE);
+                if (title != null)
+                {
+                    weights.merge(title, 1L, Long::sum);
+                }
+            }
+        }
+        
+        return weights;
+    }
+    
+    /**
+     * Gets the path of the directory with the stored suggesters of an index
+     * @param indexDirPath Path from the index files
+     * @return Suggester directory
+     */
+    private static Path getSuggestDir(String indexDirPath)
+    {
+        Path indexDir = Paths.get(indexDirPath).toAbsolutePath();
+        
+        return indexDir.resolveSibling(indexDir.getFileName() + DIRECTORY_SUFFIX);
+    }
+    
+    /**
+     * Completes a prefix with the most frequent contents terms
+     * @param prefix Prefix typed by the user
+     * @param count Max number of suggestions
+     * @return Suggested terms with their weights
+     * @throws IOException Throws an exception if the suggester cannot be read
+     */
+    public List<Lookup.LookupResult> suggestTerms(String prefix, int count) throws IOException
+    {
+        if (terms.getCount() == 0)
+        {
+            return Collections.emptyList();
+        }
+        
+        return terms.lookup(prefix.toLowerCase(), false, count);
+    }
+    
+    /**
+     * Completes a prefix with the titles that start with the same words
+     * @param prefix Prefix typed by the user
+     * @param count Max number of suggestions
+     * @return Suggested titles with their weights
+     * @throws IOException Throws an exception if the suggester cannot be read
+     */
+    public List<Lookup.LookupResult> suggestTitles(String prefix, int count) throws IOException
+    {
+        if (titles.getCount() == 0)
+        {
+            return Collections.emptyList();
+        }
+        
+        return titles.lookup(prefix, false, count);
+    }
+    
+    /**
+     * Gets the generation of the index commit from which the suggesters were built
+     * @return Index commit generation
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+    
+    /**
+     * Input of a suggester build from a map of texts and weights
+     */
+    private static class WeightedInputs implements InputIterator
+    {
+        /**
+         * Iterator over the texts and weights
+         */
+        private Iterator<Map.Entry<String, Long>> entries;
+        
+        /**
+         * Weight of the current text
+         */
+        private long weight;
+        
+        /**
+         * Initializes the input
+         * @param weights Weight of each text
+         */
+        private WeightedInputs(Map<String, Long> weights)
+        {
+            entries = weights.entrySet().iterator();
+        }
+        
+        /**
+         * Moves to the next text
+         * @return Next text, or null if there are no more texts
+         */
+        @Override
+        public BytesRef next()
+        {
+            if (!entries.hasNext())
+            {
+                return null;
+            }
+            
+            Map.Entry<String, Long> entry = entries.next();
+            weight = entry.getValue();
+            
+            return new BytesRef(entry.getKey());
+        }
+        
+        /**
+         * Gets the weight of the current text
+         * @return Text weight
+         */
+        @Override
+        public long weight()
+        {
+            return weight;
+        }
+        
+        /**
+         * Gets the payload of the current text, which the inputs do not have
+         * @return Null payload
+         */
+        @Override
+        public BytesRef payload()
+        {
+            return null;
+        }
+        
+        /**
+         * Indicates if the texts have payloads
+         * @return False, the texts have no payloads
+         */
+        @Override
+        public boolean hasPayloads()
+        {
+            return false;
+        }
+        
+        /**
+         * Gets the contexts of the current text, which the inputs do not have
+         * @return Null contexts
+         */
+        @Override
+        public Set<BytesRef> contexts()
+        {
+            return null;
+        }
+        
+        /**
+         * Indicates if the texts have contexts
+         * @return False, the texts have no contexts
+         */
+        @Override
+        public boolean hasContexts()
+        {
+            return false;
+        }
+    }
+}
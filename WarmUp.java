@@ -0,0 +1,180 @@
+package edu.co.usbcali.ir.processes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+/**
+ * Warms the service before it reports that it is ready: opens the shared searcher, reads the Covering Array,
+ * builds the near-duplicate groups, starts loading the query suggesters in the background and runs a set of
+ * searches with clustering, so the first requests do not pay for the index loading, the class loading and
+ * the JIT compilation. The service is ready by default, and it is not ready from the start of a warm-up until
+ * its end
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class WarmUp
+{
+    /**
+     * Queries used when no warm-up query file is configured, with common terms in the Reuters news
+     */
+    private static final List<String> DEFAULT_QUERIES = Arrays.asList("oil", "gold", "trade", "bank", "wheat",
+        "coffee", "dollar", "crude OR oil", "interest AND rates", "export*");
+    
+    /**
+     * Number of documents recovered and clustered by each warm-up search, the max columns of the Covering
+     * Array
+     */
+    private static final int RESULTS = 20;
+    
+    /**
+     * Indicates if the service finished its warm-up
+     */
+    private static volatile boolean ready = true;
+    
+    /**
+     * Number of warm-up searches done
+     */
+    private static volatile int searches;
+    
+    /**
+     * Number of warm-up searches that failed
+     */
+    private static volatile int errors;
+    
+    /**
+     * Marks the service as not ready until the warm-up finishes
+     */
+    public static void begin()
+    {
+        ready = false;
+        searches = 0;
+        errors = 0;
+    }
+    
+    /**
+     * Warms the service and marks it as ready, even if some warm-up searches fail, because a failed search
+     * fails in the same way after the warm-up
+     * @param indexDirPath Path from the index files
+     * @param queriesFile Path from a file with one warm-up query per line, or null for the default queries
+     * @param rounds Number of times that each query is searched
+     * @throws IOException Throws an exception if the query file, the Covering Array or the index cannot be
+     * read
+     */
+    public static void run(String indexDirPath, String queriesFile, int rounds) throws IOException
+    {
+        try
+        {
+            List<String> queries = getQueries(queriesFile);
+            Cluster.preloadCoveringArray();
+            LshIndex.build(indexDirPath);
+            Suggester.getInstance(indexDirPath);
+            
+            try (Searcher searcher = new Searcher(indexDirPath))
+            {
+                for (int round = 0; round < rounds; round++)
+                {
+                    for (String query : queries)
+                    {
+                        search(searcher, query);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            ready = true;
+        }
+    }
+    
+    /**
+     * Searches and clusters a warm-up query, loading the file paths of the recovered documents
+     * @param searcher Searcher over the index
+     * @param query Warm-up query
+     * @throws IOException Throws an exception if the index cannot be read
+     */
+    private static void search(Searcher searcher, String query) throws IOException
+    {
+        try
+        {
+            TopDocs topDocs = searcher.search(query, RESULTS);
+            ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+            
+            for (ScoreDoc scoreDoc : scoreDocs)
+            {
+                searcher.getFilePath(scoreDoc);
+            }
+            
+            if (scoreDocs.length > 0)
+            {
+                new Cluster().getDocumentsClustering(scoreDocs, scoreDocs.length);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw ex;
+        }
+        catch (Exception ex)
+        {
+            errors++;
+        }
+        finally
+        {
+            searches++;
+        }
+    }
+    
+    /**
+     * Gets the warm-up queries from a file with one query per line, or the default queries if there is no
+     * file
+     * @param queriesFile Path from the warm-up query file, or null for the default queries
+     * @return Warm-up queries
+     * @throws IOException Throws an exception if the query file cannot be read
+     */
+    private static List<String> getQueries(String queriesFile) throws IOException
+    {
+        if (queriesFile == null)
+        {
+            return DEFAULT_QUERIES;
+        }
+        
+        return Files.readAllLines(Paths.get(queriesFile), StandardCharsets.UTF_8).stream()
+            .map(String::trim)
+            .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Indicates if the service finished its warm-up
+     * @return True if the service is ready
+     */
+    public static boolean isReady()
+    {
+        return ready;
+    }
+    
+    /**
+     * Gets the number of warm-up searches done
+     * @return Number of warm-up searches
+     */
+    public static int getSearches()
+    {
+        return searches;
+    }
+    
+    /**
+     * Gets the number of warm-up searches that failed
+     * @return Number of failed warm-up searches
+     */
+    public static int getErrors()
+    {
+        return errors;
+    }
+}
@@ -0,0 +1,173 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.apache.lucene.benchmark.byTask.Benchmark;
+
+import edu.co.usbcali.ir.constants.PathsConstants;
+import edu.co.usbcali.ir.processes.ExtractReutersNews;
+
+/**
+ * Runs the byTask benchmark algorithms over the Reuters news, indexed with the Indexer schema by the
+ * ReutersDocMaker. The news are extracted from local Reuters SGM files, or read from a directory with the
+ * TXT news, so the runs do not need the network. Each algorithm report is written to a file of the output
+ * directory with the algorithm name, so the reports of different runs can be compared.
+ * Options: --sgm directory with the Reuters SGM files, --data directory with the TXT news (instead of
+ * --sgm), --work work directory (a temporary directory), --out report directory (target/bytask) and --alg
+ * comma separated algorithms (indexing,search,reader,stored-fields)
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class AlgorithmRunner
+{
+    /**
+     * Algorithms run by default, in order
+     */
+    private static final String ALGORITHMS = "indexing,search,reader,stored-fields";
+    
+    /**
+     * Classpath directory of the algorithms and the queries
+     */
+    private static final String ALGORITHMS_PATH = "/alg/";
+    
+    /**
+     * Runs the algorithms
+     * @param args Runner options as --name value pairs
+     * @throws Exception Throws an exception if the news cannot be extracted or an algorithm fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        
+        if (!options.containsKey("sgm") && !options.containsKey("data"))
+        {
+            System.err.println("Usage: AlgorithmRunner --sgm <Reuters SGM directory> | --data <TXT news "
+                + "directory> [--work <directory>] [--out <directory>] [--alg <" + ALGORITHMS + ">]");
+            System.exit(1);
+        }
+        
+        Path workDir = options.containsKey("work") ? Paths.get(options.get("work"))
+            : Files.createTempDirectory("reuters-bytask");
+        Path outDir = Paths.get(options.getOrDefault("out", "target/bytask"));
+        Files.createDirectories(workDir);
+        Files.createDirectories(outDir);
+        
+        Path dataDir;
+        if (options.containsKey("data"))
+        {
+            dataDir = Paths.get(options.get("data"));
+        }
+        else
+        {
+            dataDir = workDir.resolve(PathsConstants.DATA_PATH.substring(1));
+            new ExtractReutersNews().extractNewsFromSgm(options.get("sgm"), dataDir.toString());
+        }
+        
+        Path queriesFile = workDir.resolve("queries.txt");
+        try (InputStream stream = AlgorithmRunner.class.getResourceAsStream(ALGORITHMS_PATH + "queries.txt"))
+        {
+            Files.copy(stream, queriesFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        List<String> algorithms = Arrays.asList(options.getOrDefault("alg", ALGORITHMS).split(","));
+        for (String algorithm : algorithms)
+        {
+            String properties = "work.dir=" + getPropertyPath(workDir) + "\n"
+                + "docs.dir=" + getPropertyPath(dataDir) + "\n"
+                + "file.query.maker.file=" + getPropertyPath(queriesFile) + "\n";
+            
+            Path report = outDir.resolve(algorithm + ".txt");
+            run(properties + getAlgorithm(algorithm), report);
+            System.out.println("Report written to " + report);
+        }
+    }
+    
+    /**
+     * Runs an algorithm, writing its output both to the console and to the report file
+     * @param algorithm Algorithm text
+     * @param report Report file
+     * @throws Exception Throws an exception if the algorithm fails
+     */
+    private static void run(String algorithm, Path report) throws Exception
+    {
+        PrintStream console = System.out;
+        
+        try (OutputStream file = Files.newOutputStream(report))
+        {
+            OutputStream tee = new OutputStream()
+            {
+                @Override
+                public void write(int b) throws IOException
+                {
+                    console.write(b);
+                    file.write(b);
+                }
+                
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException
+                {
+                    console.write(b, off, len);
+                    file.write(b, off, len);
+                }
+            };
+            
+            System.setOut(new PrintStream(tee, true, StandardCharsets.UTF_8.name()));
+            Benchmark benchmark = new Benchmark(new StringReader(algorithm));
+            benchmark.execute();
+        }
+        finally
+        {
+            System.out.flush();
+            System.setOut(console);
+        }
+    }
+    
+    /**
+     * Gets the text of an algorithm from the classpath
+     * @param name Algorithm name
+     * @return Algorithm text
+     * @throws IOException Throws an exception if the algorithm does not exist
+     */
+    private static String getAlgorithm(String name) throws IOException
+    {
+        InputStream stream = AlgorithmRunner.class.getResourceAsStream(ALGORITHMS_PATH + name + ".alg");
+        if (stream == null)
+        {
+            throw new IOException("Unknown algorithm: " + name);
+        }
+        
+        try (Scanner scanner = new Scanner(stream, StandardCharsets.UTF_8.name()))
+        {
+            return scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+        }
+    }
+    
+    /**
+     * Gets an absolute path as a property value, with forward slashes because the algorithm properties are
+     * read as Java properties, where the backslash is an escape character
+     * @param path Path
+     * @return Property value
+     */
+    private static String getPropertyPath(Path path)
+    {
+        return path.toAbsolutePath().toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,49 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which reports the allocation rate and the allocated bytes per
+ * operation, and writes the results as JSON so the runs can be compared. The arguments are the JMH command
+ * line options, for example a benchmark name pattern or -p corpusSize=20000, and the result file can be
+ * changed with -rff
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class BenchmarkRunner
+{
+    /**
+     * Default result file
+     */
+    private static final String RESULT_FILE = "target/jmh-result.json";
+    
+    /**
+     * Runs the benchmarks
+     * @param args JMH command line options
+     * @throws CommandLineOptionException Throws an exception if the options are not valid
+     * @throws RunnerException Throws an exception if a benchmark fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException
+    {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON);
+        
+        if (!commandLine.getResult().hasValue())
+        {
+            options.result(RESULT_FILE);
+        }
+        
+        new Runner(options.build()).run();
+    }
+}
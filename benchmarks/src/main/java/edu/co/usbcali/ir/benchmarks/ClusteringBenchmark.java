@@ -0,0 +1,108 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.co.usbcali.ir.processes.Cluster;
+import edu.co.usbcali.ir.processes.InternalEvaluation;
+import edu.co.usbcali.ir.processes.Searcher;
+
+/**
+ * Measures the Covering Array clustering and the internal evaluation indexes for the hits of a real search.
+ * The clustering reads the Covering Array and evaluates all its lines, so its cost grows with the number of
+ * hits up to the 20 columns of the Covering Array
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ClusteringBenchmark
+{
+    /**
+     * Number of hits clustered
+     */
+    @Param({ "5", "10", "15", "20" })
+    public int hits;
+    
+    /**
+     * Query searched to get the hits, with words of several topics so the hit scores are spread
+     */
+    private static final String QUERY = "oil OR gold OR bank OR wheat";
+    
+    /**
+     * Hits clustered
+     */
+    private ScoreDoc[] scoreDocs;
+    
+    /**
+     * Clustering of the hits, used by the evaluation benchmarks
+     */
+    private List<List<Integer>> clusters;
+    
+    /**
+     * Searches the hits and clusters them once for the evaluation benchmarks
+     * @param index Shared index
+     * @throws Exception Throws an exception if the search or the clustering cannot be done
+     */
+    @Setup(Level.Trial)
+    public void setUp(IndexState index) throws Exception
+    {
+        try (Searcher searcher = new Searcher(index.indexDir.toString()))
+        {
+            scoreDocs = searcher.search(QUERY, hits).scoreDocs;
+        }
+        
+        clusters = new Cluster().getDocumentsClustering(scoreDocs, hits);
+    }
+    
+    /**
+     * Clusters the hits with the Covering Array
+     * @return Documents clustering
+     * @throws Exception Throws an exception if the Covering Array cannot be read
+     */
+    @Benchmark
+    public List<List<Integer>> clustering() throws Exception
+    {
+        return new Cluster().getDocumentsClustering(scoreDocs, hits);
+    }
+    
+    /**
+     * Computes the SSB and SSW indexes of the clustering, including the cluster statistics built by the
+     * evaluation
+     * @return SSB plus SSW, returned so the computation is not removed
+     */
+    @Benchmark
+    public float ssbAndSsw()
+    {
+        InternalEvaluation evaluation = new InternalEvaluation(clusters, scoreDocs);
+        return evaluation.getSSBResult() + evaluation.getSSWResult();
+    }
+    
+    /**
+     * Computes the Silhouette Coefficient of the clustering
+     * @return Silhouette Coefficient
+     */
+    @Benchmark
+    public float silhouette()
+    {
+        return new InternalEvaluation(clusters, scoreDocs).getSilhouetteResult();
+    }
+}
@@ -0,0 +1,74 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.co.usbcali.ir.processes.Indexer;
+import edu.co.usbcali.ir.processes.SnippetHighlighter;
+
+/**
+ * Measures, only by query shape, the baselines of {@link HighlightBenchmark}: reading the whole TXT file of
+ * each recovered news as the clients did to build their own snippets, and expanding the query terms for the
+ * highlighter once for each search
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class HighlightBaselineBenchmark
+{
+    /**
+     * Index of the next hit
+     */
+    private int nextHit;
+    
+    /**
+     * Index of the next query
+     */
+    private int nextQuery;
+    
+    /**
+     * Reads the whole TXT file of the next hit, the work done by the clients before the snippets
+     * @param hits Hits of the queries
+     * @return News content
+     * @throws IOException Throws an exception if the file cannot be read
+     */
+    @Benchmark
+    public String readFile(HighlightHits hits) throws IOException
+    {
+        int hit = nextHit;
+        nextHit = (nextHit + 1) % hits.files.size();
+        
+        return Indexer.getContent(hits.files.get(hit));
+    }
+    
+    /**
+     * Prepares the highlighter for the next query, done once for all the hits of a search
+     * @param hits Hits of the queries
+     * @return Highlighter of the query
+     * @throws IOException Throws an exception if the query terms cannot be expanded
+     */
+    @Benchmark
+    public SnippetHighlighter prepare(HighlightHits hits) throws IOException
+    {
+        Query query = hits.queries.get(nextQuery);
+        nextQuery = (nextQuery + 1) % hits.queries.size();
+        
+        return new SnippetHighlighter(query, hits.searcher.getReader());
+    }
+}
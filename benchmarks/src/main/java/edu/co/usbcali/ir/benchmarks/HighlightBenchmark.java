@@ -0,0 +1,63 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost for each recovered news of the highlighted snippets built from the term vectors, by
+ * query shape, number and size of the snippets. The baselines that do not depend on the snippets are in
+ * {@link HighlightBaselineBenchmark}
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class HighlightBenchmark
+{
+    /**
+     * Number of snippets for each news
+     */
+    @Param({ "1", "3" })
+    public int snippets;
+    
+    /**
+     * Size of each snippet in characters
+     */
+    @Param({ "50", "100", "200" })
+    public int snippetSize;
+    
+    /**
+     * Index of the next hit
+     */
+    private int nextHit;
+    
+    /**
+     * Highlights the snippets of the next hit from its term vector
+     * @param hits Hits of the queries
+     * @return Highlighted snippets
+     * @throws IOException Throws an exception if the term vector or the content cannot be read
+     */
+    @Benchmark
+    public String[] highlight(HighlightHits hits) throws IOException
+    {
+        int hit = nextHit;
+        nextHit = (nextHit + 1) % hits.docs.size();
+        
+        return hits.highlighters.get(hit).getSnippets(hits.docs.get(hit), snippets, snippetSize);
+    }
+}
@@ -0,0 +1,115 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.co.usbcali.ir.processes.Searcher;
+import edu.co.usbcali.ir.processes.SnippetHighlighter;
+
+/**
+ * Hits of a fixed list of queries of one shape over the shared index, recovered once for each benchmark trial
+ * so the highlighting benchmarks only measure the work done for each hit or each query
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+@State(Scope.Thread)
+public class HighlightHits
+{
+    /**
+     * Query shape: a single term, two terms with OR, or a prefix expanded against the index
+     */
+    @Param({ "term", "or", "prefix" })
+    public String shape;
+    
+    /**
+     * Number of different queries searched
+     */
+    private static final int QUERY_COUNT = 64;
+    
+    /**
+     * Max of news recovered by each query
+     */
+    private static final int RESULTS = 10;
+    
+    /**
+     * Searcher over the shared index
+     */
+    public Searcher searcher;
+    
+    /**
+     * Parsed queries
+     */
+    public List<Query> queries;
+    
+    /**
+     * Highlighter of the query of each hit
+     */
+    public List<SnippetHighlighter> highlighters;
+    
+    /**
+     * Document id of each hit
+     */
+    public List<Integer> docs;
+    
+    /**
+     * TXT file of each hit
+     */
+    public List<File> files;
+    
+    /**
+     * Opens the searcher and recovers the hits of the queries
+     * @param index Shared index
+     * @throws IOException Throws an exception if the index cannot be read
+     * @throws ParseException Throws an exception if a query cannot be parsed
+     */
+    @Setup(Level.Trial)
+    public void setUp(IndexState index) throws IOException, ParseException
+    {
+        searcher = new Searcher(index.indexDir.toString());
+        queries = new ArrayList<>();
+        highlighters = new ArrayList<>();
+        docs = new ArrayList<>();
+        files = new ArrayList<>();
+        
+        for (String query : new ReutersCorpus(IndexState.SEED).getQueries(shape, QUERY_COUNT))
+        {
+            ScoreDoc[] scoreDocs = searcher.search(query, RESULTS).scoreDocs;
+            queries.add(searcher.getQuery());
+            
+            SnippetHighlighter highlighter = new SnippetHighlighter(searcher.getQuery(), searcher.getReader());
+            for (ScoreDoc scoreDoc : scoreDocs)
+            {
+                highlighters.add(highlighter);
+                docs.add(scoreDoc.doc);
+                files.add(new File(searcher.getFilePath(scoreDoc)));
+            }
+        }
+        
+        if (docs.isEmpty())
+        {
+            throw new IllegalStateException("The queries do not recover any news");
+        }
+    }
+    
+    /**
+     * Releases the searcher
+     * @throws IOException Throws an exception if the searcher cannot be released
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        searcher.close();
+    }
+}
@@ -0,0 +1,73 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.co.usbcali.ir.processes.Indexer;
+import edu.co.usbcali.ir.util.TextFileFilter;
+
+/**
+ * Index over a synthetic Reuters corpus, created once for each benchmark trial and shared by all the threads
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+@State(Scope.Benchmark)
+public class IndexState
+{
+    /**
+     * Seed of the synthetic corpus, the same for all the benchmarks
+     */
+    public static final long SEED = 21578;
+    
+    /**
+     * Number of news in the corpus
+     */
+    @Param({ "5000" })
+    public int corpusSize;
+    
+    /**
+     * Directory with the TXT news
+     */
+    public Path dataDir;
+    
+    /**
+     * Directory with the index files
+     */
+    public Path indexDir;
+    
+    /**
+     * Generates the corpus and indexes it
+     * @throws IOException Throws an exception if the corpus or the index cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        dataDir = Files.createTempDirectory("reuters-news");
+        indexDir = Files.createTempDirectory("reuters-index");
+        
+        new ReutersCorpus(SEED).write(dataDir, corpusSize);
+        
+        Indexer indexer = new Indexer(indexDir.toString());
+        indexer.createIndex(dataDir.toString(), new TextFileFilter());
+        indexer.close();
+    }
+    
+    /**
+     * Deletes the corpus and the index
+     * @throws IOException Throws an exception if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        ReutersCorpus.delete(dataDir);
+        ReutersCorpus.delete(indexDir);
+    }
+}
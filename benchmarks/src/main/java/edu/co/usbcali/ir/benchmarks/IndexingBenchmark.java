@@ -0,0 +1,122 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.co.usbcali.ir.processes.Indexer;
+import edu.co.usbcali.ir.util.TextFileFilter;
+
+/**
+ * Measures the throughput of Indexer.createIndex in documents per second, indexing the synthetic corpus into
+ * a new index directory in each invocation
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IndexingBenchmark
+{
+    /**
+     * Number of news indexed in each invocation
+     */
+    @Param({ "2000" })
+    public int corpusSize;
+    
+    /**
+     * Directory with the TXT news
+     */
+    private Path dataDir;
+    
+    /**
+     * Index directory of the current invocation
+     */
+    private Path indexDir;
+    
+    /**
+     * Counter of the indexed documents, reported as documents per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Documents
+    {
+        /**
+         * Indexed documents
+         */
+        public long documents;
+    }
+    
+    /**
+     * Generates the corpus
+     * @throws IOException Throws an exception if the corpus cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUpCorpus() throws IOException
+    {
+        dataDir = Files.createTempDirectory("reuters-news");
+        new ReutersCorpus(IndexState.SEED).write(dataDir, corpusSize);
+    }
+    
+    /**
+     * Creates an empty index directory for the invocation
+     * @throws IOException Throws an exception if the directory cannot be created
+     */
+    @Setup(Level.Invocation)
+    public void setUpIndex() throws IOException
+    {
+        indexDir = Files.createTempDirectory("reuters-index");
+    }
+    
+    /**
+     * Deletes the index directory of the invocation
+     * @throws IOException Throws an exception if the directory cannot be deleted
+     */
+    @TearDown(Level.Invocation)
+    public void tearDownIndex() throws IOException
+    {
+        ReutersCorpus.delete(indexDir);
+    }
+    
+    /**
+     * Deletes the corpus
+     * @throws IOException Throws an exception if the corpus cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDownCorpus() throws IOException
+    {
+        ReutersCorpus.delete(dataDir);
+    }
+    
+    /**
+     * Indexes the whole corpus, including the commit done when the writer is closed
+     * @param counter Counter of the indexed documents
+     * @throws IOException Throws an exception if the index cannot be written
+     */
+    @Benchmark
+    public void createIndex(Documents counter) throws IOException
+    {
+        Indexer indexer = new Indexer(indexDir.toString());
+        counter.documents += indexer.createIndex(dataDir.toString(), new TextFileFilter());
+        indexer.close();
+    }
+}
@@ -0,0 +1,486 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import edu.co.usbcali.ir.constants.PathsConstants;
+import edu.co.usbcali.ir.processes.Indexer;
+import edu.co.usbcali.ir.rest.StandaloneServer;
+import edu.co.usbcali.ir.util.LatencyHistogram;
+import edu.co.usbcali.ir.util.TextFileFilter;
+
+/**
+ * End-to-end load test of the search service. It builds a local index over the synthetic Reuters corpus,
+ * runs the services in the standalone server and sends searches in open loop at a fixed rate,
+ * replaying a query log or queries built from the Reuters topic terms. Each latency is measured from the
+ * time the request should have been sent, not from the time it was sent, so a slow server cannot hide its
+ * queueing delay by slowing down the load generator. The test runs without and with clustering, and reports
+ * the throughput, the p50, p99 and p999 latencies and the error rate of each run.
+ * Options: --rate requests per second (50), --duration seconds (30), --warmup seconds (5), --results (10),
+ * --corpus news in the corpus (5000), --queries query log with one query per line, --cluster false, true
+ * or both (both), --connections max requests in flight (256) and --out JSON report file
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class LoadTest
+{
+    /**
+     * Base path of the REST services, as mapped in web.xml
+     */
+    private static final String SERVICES_PATH = "/rest/reuters/search/";
+    
+    /**
+     * Test options with their default values
+     */
+    private Map<String, String> options = new HashMap<>();
+    
+    /**
+     * Queries sent in turn
+     */
+    private List<String> queries;
+    
+    /**
+     * Base URL of the embedded server
+     */
+    private String baseUrl;
+    
+    /**
+     * Result of a load test run
+     */
+    private static class RunResult
+    {
+        /**
+         * Latency from the intended send time to the end of the response in nanoseconds
+         */
+        private LatencyHistogram latencies = new LatencyHistogram();
+        
+        /**
+         * Requests sent
+         */
+        private AtomicLong sent = new AtomicLong();
+        
+        /**
+         * Requests that failed or returned an exception
+         */
+        private AtomicLong errors = new AtomicLong();
+        
+        /**
+         * Requests rejected by the admission control with 429 or 503
+         */
+        private AtomicLong rejected = new AtomicLong();
+        
+        /**
+         * Requests that were not sent because all the connections were busy
+         */
+        private AtomicLong dropped = new AtomicLong();
+        
+        /**
+         * Requests that had not finished when the wait at the end of the run was over
+         */
+        private long unfinished;
+        
+        /**
+         * Elapsed time of the run in nanoseconds
+         */
+        private long elapsedTime;
+    }
+    
+    /**
+     * Runs the load test
+     * @param args Test options as --name value pairs
+     * @throws Exception Throws an exception if the index or the server cannot be created
+     */
+    public static void main(String[] args) throws Exception
+    {
+        LoadTest test = new LoadTest(args);
+        test.run();
+    }
+    
+    /**
+     * Initializes the test options
+     * @param args Test options as --name value pairs
+     */
+    public LoadTest(String[] args)
+    {
+        options.put("rate", "50");
+        options.put("duration", "30");
+        options.put("warmup", "5");
+        options.put("results", "10");
+        options.put("corpus", "5000");
+        options.put("cluster", "both");
+        options.put("connections", "256");
+        
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+    }
+    
+    /**
+     * Builds the index, starts the server and runs the test for each clustering option
+     * @throws Exception Throws an exception if the index or the server cannot be created
+     */
+    public void run() throws Exception
+    {
+        Path workDir = Files.createTempDirectory("reuters-load");
+        Path dataDir = workDir.resolve(PathsConstants.DATA_PATH.substring(1));
+        Path indexDir = workDir.resolve(PathsConstants.INDEX_PATH.substring(1));
+        
+        try
+        {
+            new ReutersCorpus(IndexState.SEED).write(dataDir, getInt("corpus"));
+            Indexer indexer = new Indexer(indexDir.toString());
+            indexer.createIndex(dataDir.toString(), new TextFileFilter());
+            indexer.close();
+            
+            queries = getQueries();
+            
+            StandaloneServer server = startServer(workDir);
+            try
+            {
+                runAll();
+            }
+            finally
+            {
+                server.stop();
+            }
+        }
+        finally
+        {
+            ReutersCorpus.delete(workDir);
+        }
+    }
+    
+    /**
+     * Runs the test for each clustering option, after a warm-up run, and writes the report
+     * @throws InterruptedException Throws an exception if a run is interrupted
+     * @throws IOException Throws an exception if the report cannot be written
+     */
+    private void runAll() throws InterruptedException, IOException
+    {
+        StringBuilder report = new StringBuilder("[");
+        for (String cluster : getClusterOptions())
+        {
+            System.out.println("Warming up with cluster=" + cluster);
+            runLoad(cluster, getInt("warmup"));
+            
+            System.out.println("Running with cluster=" + cluster);
+            RunResult result = runLoad(cluster, getInt("duration"));
+            
+            print(System.out, cluster, result);
+            report.append(report.length() > 1 ? "," : "").append(toJson(cluster, result));
+        }
+        report.append("]");
+        
+        if (options.containsKey("out"))
+        {
+            Files.write(Paths.get(options.get("out")), report.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * Starts the standalone server over the index and data directories of the work directory, and waits for
+     * its warm-up
+     * @param workDir Work directory with the index
+     * @return Started server
+     * @throws Exception Throws an exception if the server cannot be started
+     */
+    private StandaloneServer startServer(Path workDir) throws Exception
+    {
+        System.setProperty(PathsConstants.DATA_PATH_PROPERTY, workDir.resolve(
+            PathsConstants.DATA_PATH.substring(1)).toString());
+        System.setProperty(PathsConstants.INDEX_PATH_PROPERTY, workDir.resolve(
+            PathsConstants.INDEX_PATH.substring(1)).toString());
+        StandaloneServer.configure(null);
+        
+        StandaloneServer server = new StandaloneServer(getInt("port", 0));
+        server.start();
+        server.warmUp();
+        
+        baseUrl = "http://localhost:" + server.getPort() + SERVICES_PATH;
+        return server;
+    }
+    
+    /**
+     * Sends searches in open loop at the configured rate during a number of seconds. The requests are
+     * scheduled at fixed intervals and sent by a pool of connections, and a request is dropped and counted
+     * as an error when all the connections are busy, so the schedule never waits for the server. The requests
+     * that have not finished a minute after the end of the schedule are reported as unfinished errors
+     * @param cluster Cluster option of the searches
+     * @param seconds Duration of the run
+     * @return Run result
+     * @throws InterruptedException Throws an exception if the run is interrupted
+     */
+    private RunResult runLoad(String cluster, int seconds) throws InterruptedException
+    {
+        RunResult result = new RunResult();
+        int connections = getInt("connections");
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        AtomicLong inFlight = new AtomicLong();
+        
+        long interval = (long) (1e9 / Double.parseDouble(options.get("rate")));
+        long startTime = System.nanoTime();
+        long endTime = startTime + TimeUnit.SECONDS.toNanos(seconds);
+        
+        for (long i = 0; ; i++)
+        {
+            long intendedTime = startTime + i * interval;
+            if (intendedTime >= endTime)
+            {
+                break;
+            }
+            
+            long wait = intendedTime - System.nanoTime();
+            if (wait > 0)
+            {
+                LockSupport.parkNanos(wait);
+            }
+            
+            result.sent.incrementAndGet();
+            if (inFlight.get() >= connections)
+            {
+                result.dropped.incrementAndGet();
+                result.errors.incrementAndGet();
+                continue;
+            }
+            
+            String url = getUrl(queries.get((int) (i % queries.size())), cluster);
+            inFlight.incrementAndGet();
+            executor.execute(() ->
+            {
+                try
+                {
+                    send(url, intendedTime, result);
+                }
+                finally
+                {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+        {
+            result.unfinished = inFlight.get();
+            result.errors.addAndGet(result.unfinished);
+            executor.shutdownNow();
+        }
+        result.elapsedTime = System.nanoTime() - startTime;
+        
+        return result;
+    }
+    
+    /**
+     * Sends a search and records its latency from the intended send time
+     * @param url Search URL
+     * @param intendedTime Time when the search should have been sent, from {@link System#nanoTime()}
+     * @param result Run result
+     */
+    private void send(String url, long intendedTime, RunResult result)
+    {
+        try
+        {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            int status = connection.getResponseCode();
+            
+            InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            String body = stream == null ? "" : read(stream);
+            
+            if (status == 429 || status == 503)
+            {
+                result.rejected.incrementAndGet();
+                result.errors.incrementAndGet();
+            }
+            else if (status != 200 || body.contains("\"status\":\"Exception\""))
+            {
+                result.errors.incrementAndGet();
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            result.errors.incrementAndGet();
+        }
+        
+        result.latencies.record(System.nanoTime() - intendedTime);
+    }
+    
+    /**
+     * Reads a response body
+     * @param stream Response stream
+     * @return Response body
+     * @throws IOException Throws an exception if the response cannot be read
+     */
+    private static String read(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        
+        try (InputStream input = stream)
+        {
+            int read;
+            while ((read = input.read(buffer)) > 0)
+            {
+                output.write(buffer, 0, read);
+            }
+        }
+        
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+    
+    /**
+     * Gets the URL of a search
+     * @param query Query to search
+     * @param cluster Cluster option of the search
+     * @return Search URL
+     */
+    private String getUrl(String query, String cluster)
+    {
+        try
+        {
+            String path = URLEncoder.encode(query, StandardCharsets.UTF_8.name()).replace("+", "%20");
+            return baseUrl + path + "/" + cluster + "/" + options.get("results");
+        }
+        catch (UnsupportedEncodingException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Gets the queries to send: the lines of the query log, or term and OR queries built from the Reuters
+     * topic terms when there is no query log
+     * @return Queries
+     * @throws IOException Throws an exception if the query log cannot be read
+     */
+    private List<String> getQueries() throws IOException
+    {
+        if (options.containsKey("queries"))
+        {
+            return Files.readAllLines(Paths.get(options.get("queries")), StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .collect(Collectors.toList());
+        }
+        
+        List<String> topicQueries = new ArrayList<>();
+        Random random = new Random(IndexState.SEED);
+        
+        for (int i = 0; i < 1000; i++)
+        {
+            String[] topic = ReutersCorpus.TOPICS[random.nextInt(ReutersCorpus.TOPICS.length)];
+            String term = topic[random.nextInt(topic.length)];
+            
+            topicQueries.add(i % 2 == 0 ? term : term + " OR " + topic[random.nextInt(topic.length)]);
+        }
+        
+        return topicQueries;
+    }
+    
+    /**
+     * Gets the cluster options of the runs
+     * @return Cluster options
+     */
+    private List<String> getClusterOptions()
+    {
+        List<String> clusterOptions = new ArrayList<>();
+        String cluster = options.get("cluster");
+        
+        if (!"true".equals(cluster))
+        {
+            clusterOptions.add("false");
+        }
+        if (!"false".equals(cluster))
+        {
+            clusterOptions.add("true");
+        }
+        
+        return clusterOptions;
+    }
+    
+    /**
+     * Prints the result of a run
+     * @param out Output stream
+     * @param cluster Cluster option of the run
+     * @param result Run result
+     */
+    private void print(PrintStream out, String cluster, RunResult result)
+    {
+        double seconds = result.elapsedTime / 1e9;
+        long completed = result.latencies.getCount();
+        
+        out.printf("cluster=%s rate=%s/s sent=%d completed=%d throughput=%.1f/s%n", cluster,
+            options.get("rate"), result.sent.get(), completed, completed / seconds);
+        out.printf("  latency ms: p50=%.2f p99=%.2f p999=%.2f max=%.2f mean=%.2f%n",
+            result.latencies.getPercentile(50) / 1e6, result.latencies.getPercentile(99) / 1e6,
+            result.latencies.getPercentile(99.9) / 1e6, result.latencies.getMax() / 1e6,
+            result.latencies.getMean() / 1e6);
+        out.printf("  errors=%d (%.2f%%) rejected=%d dropped=%d unfinished=%d%n", result.errors.get(),
+            100.0 * result.errors.get() / Math.max(1, result.sent.get()), result.rejected.get(),
+            result.dropped.get(), result.unfinished);
+    }
+    
+    /**
+     * Gets the result of a run as a JSON object
+     * @param cluster Cluster option of the run
+     * @param result Run result
+     * @return JSON object
+     */
+    private String toJson(String cluster, RunResult result)
+    {
+        double seconds = result.elapsedTime / 1e9;
+        
+        return String.format(Locale.ROOT, "{\"cluster\":%s,\"rate\":%s,\"sent\":%d,\"completed\":%d,"
+            + "\"throughput\":%.3f,\"p50\":%.3f,\"p99\":%.3f,\"p999\":%.3f,\"max\":%.3f,\"errors\":%d,"
+            + "\"errorRate\":%.5f,\"rejected\":%d,\"dropped\":%d,\"unfinished\":%d}", cluster,
+            options.get("rate"),
+            result.sent.get(), result.latencies.getCount(), result.latencies.getCount() / seconds,
+            result.latencies.getPercentile(50) / 1e6, result.latencies.getPercentile(99) / 1e6,
+            result.latencies.getPercentile(99.9) / 1e6, result.latencies.getMax() / 1e6, result.errors.get(),
+            (double) result.errors.get() / Math.max(1, result.sent.get()), result.rejected.get(),
+            result.dropped.get(), result.unfinished);
+    }
+    
+    /**
+     * Gets an integer option
+     * @param name Option name
+     * @return Option value
+     */
+    private int getInt(String name)
+    {
+        return Integer.parseInt(options.get(name));
+    }
+    
+    /**
+     * Gets an integer option with a default value
+     * @param name Option name
+     * @param defaultValue Value used when the option is not given
+     * @return Option value
+     */
+    private int getInt(String name, int defaultValue)
+    {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,217 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates a synthetic corpus with the shape of the Reuters-21578 news extracted to TXT files: one file for
+ * each news with the date, title and body separated by blank lines, and file names like reut2-000.sgm-0.txt.
+ * The words are drawn from topic vocabularies with a Zipf distribution and the body lengths are close to the
+ * Reuters ones, so the index and the hit scores look like the real ones. The corpus only depends on the seed,
+ * so every run uses the same documents
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class ReutersCorpus
+{
+    /**
+     * Vocabulary of each topic, most frequent words first
+     */
+    public static final String[][] TOPICS = {
+        { "oil", "crude", "barrel", "opec", "prices", "production", "bpd", "refinery", "energy", "output" },
+        { "cocoa", "coffee", "sugar", "exports", "harvest", "ivory", "coast", "brazil", "tonnes", "crop" },
+        { "bank", "rate", "interest", "money", "fed", "dollar", "inflation", "reserve", "market", "currency" },
+        { "wheat", "grain", "corn", "usda", "soybean", "farm", "agriculture", "acres", "bushels", "export" },
+        { "gold", "silver", "metals", "mining", "copper", "ounces", "zinc", "ore", "mine", "platinum" },
+        { "shares", "acquisition", "merger", "stake", "offer", "company", "stock", "tender", "bid", "buyout" },
+        { "trade", "deficit", "tariffs", "japan", "imports", "surplus", "talks", "yen", "billion", "gatt" },
+        { "earnings", "profit", "net", "loss", "revenues", "quarter", "dividend", "cts", "share", "year" }
+    };
+    
+    /**
+     * Words shared by all the news
+     */
+    private static final String[] COMMON = { "said", "the", "in", "of", "to", "and", "a", "for", "it", "was",
+        "on", "reuter", "mln", "pct", "dlrs", "from", "its", "by", "at", "would" };
+    
+    /**
+     * Months used in the news dates
+     */
+    private static final String[] MONTHS = { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP",
+        "OCT" };
+    
+    /**
+     * News in each SGM file of the Reuters collection
+     */
+    private static final int NEWS_PER_FILE = 1000;
+    
+    /**
+     * Random generator seeded for reproducible corpora
+     */
+    private Random random;
+    
+    /**
+     * Initializes the generator
+     * @param seed Random seed
+     */
+    public ReutersCorpus(long seed)
+    {
+        random = new Random(seed);
+    }
+    
+    /**
+     * Writes a number of news as TXT files in a directory
+     * @param dataDir Directory for the TXT files
+     * @param count Number of news
+     * @throws IOException Throws an exception if the files cannot be written
+     */
+    public void write(Path dataDir, int count) throws IOException
+    {
+        Files.createDirectories(dataDir);
+        
+        for (int i = 0; i < count; i++)
+        {
+            String fileName = String.format("reut2-%03d.sgm-%d.txt", i / NEWS_PER_FILE, i);
+            Files.write(dataDir.resolve(fileName), getNews().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * Generates the text of a news: date, title and body
+     * @return News text
+     */
+    public String getNews()
+    {
+        String[] topic = TOPICS[random.nextInt(TOPICS.length)];
+        String date = String.format("%2d-%s-1987 %02d:%02d:%02d.%02d", 1 + random.nextInt(28),
+            MONTHS[random.nextInt(MONTHS.length)], random.nextInt(24), random.nextInt(60), random.nextInt(60),
+            random.nextInt(100));
+        
+        int titleLength = 4 + random.nextInt(5);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < titleLength; i++)
+        {
+            title.append(i > 0 ? " " : "").append(getWord(topic).toUpperCase());
+        }
+        
+        int length = (int) Math.min(1000, Math.max(20, Math.exp(4.7 + 0.8 * random.nextGaussian())));
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < length; i++)
+        {
+            body.append(i > 0 ? (i % 12 == 0 ? ".\n" : " ") : "").append(getWord(topic));
+        }
+        
+        return date + "\n\n" + title + "\n\n" + body + ".\n Reuter\n";
+    }
+    
+    /**
+     * Gets a list of queries with the same shape, built from the topic vocabularies
+     * @param shape Query shape: term, or, and, prefix or fuzzy
+     * @param count Number of queries
+     * @return Query strings
+     */
+    public List<String> getQueries(String shape, int count)
+    {
+        List<String> queries = new ArrayList<>();
+        
+        for (int i = 0; i < count; i++)
+        {
+            String[] topic = TOPICS[random.nextInt(TOPICS.length)];
+            String first = topic[getZipfIndex(topic.length)];
+            String second = topic[getZipfIndex(topic.length)];
+            
+            switch (shape)
+            {
+                case "term":
+                    queries.add(first);
+                    break;
+                case "or":
+                    queries.add(first + " OR " + second);
+                    break;
+                case "and":
+                    queries.add(first + " AND " + second);
+                    break;
+                case "prefix":
+                    queries.add(first.substring(0, Math.min(3, first.length())) + "*");
+                    break;
+                case "fuzzy":
+                    queries.add(first + "~");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown query shape " + shape);
+            }
+        }
+        
+        return queries;
+    }
+    
+    /**
+     * Deletes a directory with all its files
+     * @param dir Directory to delete
+     * @throws IOException Throws an exception if a file cannot be deleted
+     */
+    public static void delete(Path dir) throws IOException
+    {
+        if (!Files.exists(dir))
+        {
+            return;
+        }
+        
+        try (Stream<Path> paths = Files.walk(dir))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+            {
+                Files.delete(path);
+            }
+        }
+    }
+    
+    /**
+     * Gets a word of the news, from its topic or from the common words
+     * @param topic Topic vocabulary
+     * @return Word
+     */
+    private String getWord(String[] topic)
+    {
+        if (random.nextInt(3) == 0)
+        {
+            return topic[getZipfIndex(topic.length)];
+        }
+        
+        return COMMON[getZipfIndex(COMMON.length)];
+    }
+    
+    /**
+     * Gets a random index with a Zipf distribution, so the first words are much more frequent
+     * @param size Number of words
+     * @return Word index
+     */
+    private int getZipfIndex(int size)
+    {
+        double harmonic = 0;
+        for (int i = 1; i <= size; i++)
+        {
+            harmonic += 1.0 / i;
+        }
+        
+        double value = random.nextDouble() * harmonic;
+        for (int i = 1; i <= size; i++)
+        {
+            value -= 1.0 / i;
+            if (value <= 0)
+            {
+                return i - 1;
+            }
+        }
+        
+        return size - 1;
+    }
+}
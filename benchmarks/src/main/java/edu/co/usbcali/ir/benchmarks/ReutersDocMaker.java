@@ -0,0 +1,89 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.lucene.benchmark.byTask.feeds.ContentSource;
+import org.apache.lucene.benchmark.byTask.feeds.DocData;
+import org.apache.lucene.benchmark.byTask.feeds.DocMaker;
+import org.apache.lucene.benchmark.byTask.utils.Config;
+import org.apache.lucene.document.Document;
+
+import edu.co.usbcali.ir.constants.LuceneConstants;
+import edu.co.usbcali.ir.processes.Indexer;
+import edu.co.usbcali.ir.processes.NewsMetadata;
+
+/**
+ * Document maker of the byTask benchmarks that builds the documents with the schema of the Indexer: the
+ * content, file name and file path fields with term vectors, the stored MinHash signature and title, and the
+ * date, topics and places for the filters.
+ * The default DocMaker fields and properties are not used, so the benchmarks measure the same documents as
+ * the index
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class ReutersDocMaker extends DocMaker
+{
+    /**
+     * Source of the news
+     */
+    private ContentSource newsSource;
+    
+    /**
+     * Configures the document maker and keeps the content source
+     * @param config Benchmark configuration
+     * @param source Source of the news
+     */
+    @Override
+    public void setConfig(Config config, ContentSource source)
+    {
+        super.setConfig(config, source);
+        newsSource = source;
+    }
+    
+    /**
+     * Makes a document from the next news
+     * @return Document with the index schema
+     * @throws Exception Throws an exception if there are no more news or a news cannot be read
+     */
+    @Override
+    public Document makeDocument() throws Exception
+    {
+        DocData docData = newsSource.getNextDocData(new DocData());
+        String filePath = docData.getName();
+        String fileName = Paths.get(filePath).getFileName().toString();
+        
+        Properties properties = docData.getProps();
+        NewsMetadata metadata = new NewsMetadata(docData.getTitle(),
+            Long.parseLong(properties.getProperty(LuceneConstants.DATE)),
+            getValues(properties.getProperty(LuceneConstants.TOPICS)),
+            getValues(properties.getProperty(LuceneConstants.PLACES)));
+        
+        return Indexer.getDocument(docData.getBody(), metadata, fileName, filePath);
+    }
+    
+    /**
+     * Gets the values of a list property of the news
+     * @param property Comma separated values
+     * @return Values, empty if the property is empty
+     */
+    private static List<String> getValues(String property)
+    {
+        return property.isEmpty() ? Collections.emptyList() : Arrays.asList(property.split(","));
+    }
+    
+    /**
+     * Makes a document from the next news, which is never split because the index keeps whole news
+     * @param size Size requested by the task, ignored
+     * @return Document with the index schema
+     * @throws Exception Throws an exception if there are no more news or a news cannot be read
+     */
+    @Override
+    public Document makeDocument(int size) throws Exception
+    {
+        return makeDocument();
+    }
+}
@@ -0,0 +1,140 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.apache.lucene.benchmark.byTask.feeds.ContentSource;
+import org.apache.lucene.benchmark.byTask.feeds.DocData;
+import org.apache.lucene.benchmark.byTask.feeds.NoMoreDataException;
+import org.apache.lucene.benchmark.byTask.utils.Config;
+
+import edu.co.usbcali.ir.constants.PathsConstants;
+import edu.co.usbcali.ir.constants.LuceneConstants;
+import edu.co.usbcali.ir.processes.Indexer;
+import edu.co.usbcali.ir.processes.NewsMetadata;
+
+/**
+ * Content source of the byTask benchmarks that reads the TXT news extracted from the Reuters SGM files, in
+ * the order of their paths so every run indexes the same sequence. The news content is read as the Indexer
+ * reads it, with the structured fields of its JSON file, and the canonical file path is kept as the document
+ * name. The directory is set with the
+ * property docs.dir, relative to work.dir when it is not absolute
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+public class ReutersNewsContentSource extends ContentSource
+{
+    /**
+     * TXT news files, sorted by path
+     */
+    private List<Path> inputFiles = new ArrayList<>();
+    
+    /**
+     * Index of the next file
+     */
+    private int nextFile;
+    
+    /**
+     * Collects the TXT news files from the configured directory
+     * @param config Benchmark configuration
+     */
+    @Override
+    public void setConfig(Config config)
+    {
+        super.setConfig(config);
+        
+        Path dataDir = Paths.get(config.get("docs.dir", PathsConstants.DATA_PATH.substring(1)));
+        if (!dataDir.isAbsolute())
+        {
+            dataDir = Paths.get(config.get("work.dir", "work")).resolve(dataDir);
+        }
+        
+        inputFiles.clear();
+        try (Stream<Path> paths = Files.walk(dataDir))
+        {
+            paths.filter(path -> path.toString().endsWith(".txt")).forEach(inputFiles::add);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("The news directory cannot be read: " + dataDir, ex);
+        }
+        
+        if (inputFiles.isEmpty())
+        {
+            throw new IllegalStateException("There are no TXT news in " + dataDir.toAbsolutePath());
+        }
+        Collections.sort(inputFiles);
+    }
+    
+    /**
+     * Gets the next news, starting again from the first one when the source runs forever
+     * @param docData Document data to fill
+     * @return Document data with the news content and title, its canonical file path as name, and its date,
+     * topics and places as properties
+     * @throws NoMoreDataException Throws an exception when all the news were read and the source does not
+     * run forever
+     * @throws IOException Throws an exception if the news cannot be read
+     */
+    @Override
+    public DocData getNextDocData(DocData docData) throws NoMoreDataException, IOException
+    {
+        Path file;
+        synchronized (this)
+        {
+            if (nextFile >= inputFiles.size())
+            {
+                if (!forever)
+                {
+                    throw new NoMoreDataException();
+                }
+                nextFile = 0;
+            }
+            file = inputFiles.get(nextFile++);
+        }
+        
+        String content = Indexer.getContent(file.toFile());
+        NewsMetadata metadata = NewsMetadata.read(file.toFile());
+        
+        Properties properties = new Properties();
+        properties.setProperty(LuceneConstants.DATE, String.valueOf(metadata.getDate()));
+        properties.setProperty(LuceneConstants.TOPICS, String.join(",", metadata.getTopics()));
+        properties.setProperty(LuceneConstants.PLACES, String.join(",", metadata.getPlaces()));
+        
+        docData.clear();
+        docData.setName(file.toRealPath().toString());
+        docData.setBody(content);
+        docData.setTitle(metadata.getTitle());
+        docData.setProps(properties);
+        
+        addBytes(content.length());
+        addItem();
+        
+        return docData;
+    }
+    
+    /**
+     * Restarts the source from the first news
+     * @throws IOException Throws an exception if the source cannot be reset
+     */
+    @Override
+    public synchronized void resetInputs() throws IOException
+    {
+        super.resetInputs();
+        nextFile = 0;
+    }
+    
+    /**
+     * Closes the source, which keeps no open files
+     */
+    @Override
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,108 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.co.usbcali.ir.processes.Searcher;
+
+/**
+ * Measures the latency distribution of Searcher.search for each query shape and number of results. Each
+ * thread has its own Searcher because the query parser cannot be shared, and cycles over a fixed list of
+ * queries so the results are not served from a single cached term
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SearchBenchmark
+{
+    /**
+     * Query shape: a single term, two terms with OR or AND, a prefix or a fuzzy term
+     */
+    @Param({ "term", "or", "and", "prefix", "fuzzy" })
+    public String shape;
+    
+    /**
+     * Max of documents returned in the search
+     */
+    @Param({ "10", "100", "1000" })
+    public int results;
+    
+    /**
+     * Number of different queries searched in turn
+     */
+    private static final int QUERY_COUNT = 256;
+    
+    /**
+     * Searcher over the shared index
+     */
+    private Searcher searcher;
+    
+    /**
+     * Queries searched in turn
+     */
+    private List<String> queries;
+    
+    /**
+     * Index of the next query
+     */
+    private int next;
+    
+    /**
+     * Opens the searcher and generates the queries
+     * @param index Shared index
+     * @throws IOException Throws an exception if the index cannot be opened
+     */
+    @Setup(Level.Trial)
+    public void setUp(IndexState index) throws IOException
+    {
+        searcher = new Searcher(index.indexDir.toString());
+        queries = new ReutersCorpus(IndexState.SEED).getQueries(shape, QUERY_COUNT);
+    }
+    
+    /**
+     * Releases the searcher
+     * @throws IOException Throws an exception if the searcher cannot be released
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        searcher.close();
+    }
+    
+    /**
+     * Parses and searches the next query
+     * @return Recovered documents
+     * @throws IOException Throws an exception if the index cannot be read
+     * @throws ParseException Throws an exception if the query cannot be parsed
+     */
+    @Benchmark
+    public TopDocs search() throws IOException, ParseException
+    {
+        String query = queries.get(next);
+        next = (next + 1) % queries.size();
+        
+        return searcher.search(query, results);
+    }
+}
@@ -0,0 +1,154 @@
+package edu.co.usbcali.ir.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.ScoreDoc;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import edu.co.usbcali.ir.processes.Searcher;
+import edu.co.usbcali.ir.rest.SearchResult;
+
+/**
+ * Measures the JSON serialization of a search result with up to 1000 hits, with and without the compact
+ * output and the gzip compression. The output bytes and the hits are counted, so the bytes per hit of each
+ * option can be compared across runs, and the GC profiler reports the allocated bytes per serialization
+ * @author Joan Romero
+ * @author Juan Carlos Chaparro
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SerializationBenchmark
+{
+    /**
+     * Number of hits serialized
+     */
+    @Param({ "10", "100", "1000" })
+    public int hits;
+    
+    /**
+     * Indicates if the fields that were not requested are left out of the output
+     */
+    @Param({ "false", "true" })
+    public boolean compact;
+    
+    /**
+     * Indicates if the output is compressed with gzip
+     */
+    @Param({ "false", "true" })
+    public boolean gzip;
+    
+    /**
+     * Query searched to get the hits, with a word common to all the news
+     */
+    private static final String QUERY = "said";
+    
+    /**
+     * JSON factory, shared as in the services
+     */
+    private static final JsonFactory FACTORY = new JsonFactory();
+    
+    /**
+     * Search result serialized
+     */
+    private SearchResult result;
+    
+    /**
+     * Number of hits in the search result
+     */
+    private int resultHits;
+    
+    /**
+     * Output buffer, reused between serializations
+     */
+    private ByteArrayOutputStream output = new ByteArrayOutputStream();
+    
+    /**
+     * Counters of the output bytes and the serialized hits in each iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Output
+    {
+        /**
+         * Output bytes
+         */
+        public long bytes;
+        
+        /**
+         * Serialized hits
+         */
+        public long hits;
+    }
+    
+    /**
+     * Searches the hits and loads their file paths
+     * @param index Shared index
+     * @throws IOException Throws an exception if the index cannot be read
+     * @throws ParseException Throws an exception if the query cannot be parsed
+     */
+    @Setup(Level.Trial)
+    public void setUp(IndexState index) throws IOException, ParseException
+    {
+        try (Searcher searcher = new Searcher(index.indexDir.toString()))
+        {
+            ScoreDoc[] scoreDocs = searcher.search(QUERY, hits).scoreDocs;
+            String[] paths = new String[scoreDocs.length];
+            
+            for (int i = 0; i < scoreDocs.length; i++)
+            {
+                paths[i] = searcher.getFilePath(scoreDocs[i]);
+            }
+            
+            result = new SearchResult(scoreDocs, paths);
+            resultHits = scoreDocs.length;
+        }
+    }
+    
+    /**
+     * Writes the search result as JSON to the output buffer
+     * @param counters Counters of the output bytes and the serialized hits
+     * @return Output size in bytes
+     * @throws IOException Throws an exception if the result cannot be written
+     */
+    @Benchmark
+    public int serialize(Output counters) throws IOException
+    {
+        output.reset();
+        
+        OutputStream stream = gzip ? new GZIPOutputStream(output, 8192) : output;
+        try (JsonGenerator generator = FACTORY.createGenerator(stream))
+        {
+            result.writeTo(generator, compact);
+        }
+        stream.close();
+        
+        counters.bytes += output.size();
+        counters.hits += resultHits;
+        
+        return output.size();
+    }
+}